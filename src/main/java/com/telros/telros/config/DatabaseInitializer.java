@@ -3,10 +3,10 @@ package com.telros.telros.config;
 import com.telros.telros.model.ERole;
 import com.telros.telros.model.Role;
 import com.telros.telros.model.User;
-import com.telros.telros.repository.RoleRepository;
 import com.telros.telros.repository.UserRepository;
 import com.telros.telros.model.UserDetails;
 import com.telros.telros.repository.UserDetailsRepository;
+import com.telros.telros.service.RoleRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -22,34 +22,17 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class DatabaseInitializer implements CommandLineRunner {
 
-    private final RoleRepository roleRepository;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserDetailsRepository userDetailsRepository;
+    private final RoleRegistry roleRegistry;
 
     @Override
     public void run(String... args) {
-        initRoles();
+        // Роли к этому моменту уже созданы и загружены реестром ролей
         createDefaultAdmin();
     }
 
-    /**
-     * Инициализация ролей в базе данных
-     */
-    private void initRoles() {
-        if (roleRepository.count() == 0) {
-            Role userRole = new Role();
-            userRole.setName(ERole.ROLE_USER);
-            roleRepository.save(userRole);
-
-            Role adminRole = new Role();
-            adminRole.setName(ERole.ROLE_ADMIN);
-            roleRepository.save(adminRole);
-
-            System.out.println("Роли успешно созданы");
-        }
-    }
-
     /**
      * Создание администратора по умолчанию (admin:admin)
      */
@@ -61,9 +44,7 @@ public class DatabaseInitializer implements CommandLineRunner {
             admin.setPassword(passwordEncoder.encode("admin"));
 
             Set<Role> roles = new HashSet<>();
-            Role adminRole = roleRepository.findByName(ERole.ROLE_ADMIN)
-                    .orElseThrow(() -> new RuntimeException("Ошибка: Роль ADMIN не найдена."));
-            roles.add(adminRole);
+            roles.add(roleRegistry.get(ERole.ROLE_ADMIN));
             admin.setRoles(roles);
 
            // Создаем и сохраняем пустую детальную информацию для администратора
@@ -0,0 +1,146 @@
+package com.telros.telros.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telros.telros.dto.response.MessageResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий бюджет байт для одновременно выполняемых загрузок фотографий.
+ * Перед разбором тела запрос резервирует в семафоре объем по Content-Length (в килобайтах),
+ * а при его отсутствии - максимальный размер загрузки. Если бюджет занят дольше photo.upload.budget.max-wait,
+ * запрос отклоняется с 503 и заголовком Retry-After, не дочитывая тело.
+ * Фильтр стоит сразу после цепочки Spring Security ({@link #ORDER}), поэтому неаутентифицированные запросы
+ * бюджет не занимают, и до DispatcherServlet, поэтому multipart-тело не разбирается до получения бюджета.
+ */
+@Component
+@Order(UploadBudgetFilter.ORDER)
+@Slf4j
+public class UploadBudgetFilter extends OncePerRequestFilter {
+
+    /**
+     * Порядок фильтра: следующий после цепочки Spring Security
+     */
+    public static final int ORDER = SecurityProperties.DEFAULT_FILTER_ORDER + 1;
+
+    private static final long RETRY_AFTER_SECONDS = 1;
+    private static final String[] UPLOAD_PATHS = {"/api/users/*/photo", "/api/users/me/photo/uploads/*"};
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ObjectMapper objectMapper;
+    private final Semaphore budget;
+    private final int budgetKb;
+    private final long maxUploadSize;
+    private final long maxWaitMs;
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public UploadBudgetFilter(ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${photo.upload.budget.max-in-flight:64MB}") DataSize maxInFlight,
+                              @Value("${photo.upload.budget.max-wait:2s}") Duration maxWait,
+                              @Value("${photo.upload.max-size:10MB}") DataSize maxUploadSize) {
+        this.objectMapper = objectMapper;
+        this.budgetKb = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxInFlight.toKilobytes()));
+        // Справедливая очередь, чтобы крупные загрузки не ждали бесконечно за мелкими
+        this.budget = new Semaphore(budgetKb, true);
+        this.maxUploadSize = maxUploadSize.toBytes();
+        this.maxWaitMs = maxWait.toMillis();
+        Gauge.builder("photo.upload.budget.in-flight", inFlightBytes, AtomicLong::get)
+                .description("Объем загружаемых в данный момент фотографий, байт")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("photo.upload.budget.limit", () -> maxInFlight.toBytes())
+                .description("Бюджет одновременно загружаемых фотографий, байт")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("photo.upload.budget.wait")
+                .description("Время ожидания бюджета загрузки")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("photo.upload.budget.rejected")
+                .description("Количество загрузок, отклоненных из-за исчерпания бюджета")
+                .register(meterRegistry);
+        log.info("Бюджет загрузок фотографий: {}, максимальное ожидание {} мс", maxInFlight, maxWaitMs);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!HttpMethod.POST.matches(method) && !HttpMethod.PUT.matches(method)) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : UPLOAD_PATHS) {
+            if (pathMatcher.match(pattern, path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long contentLength = request.getContentLengthLong();
+        long bytes = contentLength >= 0 ? Math.min(contentLength, maxUploadSize) : maxUploadSize;
+        // Запрос больше всего бюджета занимает его целиком, иначе он никогда бы его не получил
+        int permits = (int) Math.min(budgetKb, Math.max(1, (bytes + 1023) / 1024));
+
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = budget.tryAcquire(permits, maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Ожидание бюджета загрузки прервано", e);
+        }
+        waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejected.increment();
+            log.warn("Бюджет загрузок исчерпан, запрос {} {} на {} байт отклонен", request.getMethod(), request.getRequestURI(), bytes);
+            reject(response);
+            return;
+        }
+
+        inFlightBytes.addAndGet(bytes);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            inFlightBytes.addAndGet(-bytes);
+            budget.release(permits);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS));
+        // Клиент может продолжать передавать тело, поэтому соединение не переиспользуется
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new MessageResponse("Сервис перегружен, повторите попытку позже"));
+    }
+}
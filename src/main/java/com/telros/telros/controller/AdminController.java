@@ -0,0 +1,83 @@
+package com.telros.telros.controller;
+
+import com.telros.telros.dto.request.SignupRequest;
+import com.telros.telros.dto.response.BatchRegistrationResponse;
+import com.telros.telros.dto.response.MessageResponse;
+import com.telros.telros.service.BatchRegistrationService;
+import com.telros.telros.service.RoleRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Контроллер для административных операций
+ */
+@CrossOrigin(origins = "*", maxAge = 3600) //Настроить CORS перед продакшеном на наш домен
+@RestController
+@RequestMapping("/api/admin")
+@Tag(name = "Администрирование", description = "API для административных операций")
+@SecurityRequirement(name = "bearerAuth")
+@Slf4j
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final RoleRegistry roleRegistry;
+    private final BatchRegistrationService batchRegistrationService;
+
+    /**
+     * Перечитать реестр ролей из базы данных
+     *
+     * @return сообщение о результате
+     */
+    @Operation(summary = "Обновить реестр ролей", description = "Перечитать роли из базы данных (только для администраторов)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Реестр ролей обновлен",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content)
+    })
+    @PostMapping("/roles/refresh")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<MessageResponse> refreshRoles() {
+        log.info("Запрос на обновление реестра ролей");
+        roleRegistry.refresh();
+        return ResponseEntity.ok(new MessageResponse("Реестр ролей обновлен"));
+    }
+
+    /**
+     * Пакетная регистрация пользователей
+     *
+     * @param requests данные для регистрации
+     * @return результаты регистрации по каждой записи
+     */
+    @Operation(summary = "Пакетная регистрация", description = "Зарегистрировать несколько пользователей одним запросом (только для администраторов)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пакет обработан",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BatchRegistrationResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Пакет пуст или слишком велик",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Сервис перегружен",
+                    content = @Content)
+    })
+    @PostMapping("/users/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BatchRegistrationResponse> registerUsers(@RequestBody List<SignupRequest> requests) {
+        log.info("Запрос на пакетную регистрацию пользователей");
+        return ResponseEntity.ok(batchRegistrationService.registerAll(requests));
+    }
+}
@@ -1,15 +1,16 @@
 package com.telros.telros.controller;
 
-import com.telros.telros.model.ERole;
-import com.telros.telros.model.Role;
 import com.telros.telros.model.User;
 import com.telros.telros.dto.request.LoginRequest;
 import com.telros.telros.dto.request.SignupRequest;
 import com.telros.telros.dto.response.JwtResponse;
 import com.telros.telros.dto.response.MessageResponse;
-import com.telros.telros.repository.RoleRepository;
+import com.telros.telros.event.UserDetailsChangedEvent;
 import com.telros.telros.repository.UserRepository;
+import com.telros.telros.security.CachingUserDetailsService;
+import com.telros.telros.security.LoginAttemptService;
 import com.telros.telros.security.UserDetailsImpl;
+import com.telros.telros.service.RoleRegistry;
 import com.telros.telros.security.jwt.JwtUtils;
 import com.telros.telros.model.UserDetails;
 import com.telros.telros.repository.UserDetailsRepository;
@@ -19,11 +20,15 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -31,9 +36,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -49,15 +52,19 @@ public class AuthController {
 
     private final AuthenticationManager authenticationManager;
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder encoder;
     private final JwtUtils jwtUtils;
     private final UserDetailsRepository userDetailsRepository;
+    private final CachingUserDetailsService userDetailsService;
+    private final LoginAttemptService loginAttemptService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Аутентификация пользователя
      *
      * @param loginRequest данные для входа
+     * @param request      HTTP запрос
      * @return JWT токен и информация о пользователе
      */
     @Operation(summary = "Аутентификация пользователя", description = "Аутентификация пользователя по логину и паролю")
@@ -66,14 +73,28 @@ public class AuthController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = JwtResponse.class))}),
             @ApiResponse(responseCode = "401", description = "Неверные учетные данные",
-                    content = @Content)
+                    content = @Content),
+            @ApiResponse(responseCode = "429", description = "Вход временно заблокирован из-за неудачных попыток",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))})
     })
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
         log.info("Попытка аутентификации пользователя: {}", loginRequest.getUsername());
-        
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        // За доверенным прокси адрес клиента уже взят из X-Forwarded-For (server.forward-headers-strategy=native)
+        String clientIp = request.getRemoteAddr();
+        loginAttemptService.checkAllowed(loginRequest.getUsername(), clientIp);
+
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        } catch (BadCredentialsException e) {
+            loginAttemptService.recordFailure(loginRequest.getUsername(), clientIp);
+            log.warn("Неудачная попытка входа пользователя {} с адреса {}", loginRequest.getUsername(), clientIp);
+            throw e;
+        }
+        loginAttemptService.recordSuccess(loginRequest.getUsername());
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = jwtUtils.generateJwtToken(authentication);
@@ -110,14 +131,16 @@ public class AuthController {
     public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
         log.info("Попытка регистрации нового пользователя: {}", signUpRequest.getUsername());
         
-        if (userRepository.existsByUsername(signUpRequest.getUsername())) {
+        List<String> conflicts = userRepository.findConflictingUsernames(
+                signUpRequest.getUsername(), signUpRequest.getEmail());
+        if (conflicts.contains(signUpRequest.getUsername())) {
             log.warn("Регистрация не удалась: имя пользователя {} уже занято", signUpRequest.getUsername());
             return ResponseEntity
                     .badRequest()
                     .body(new MessageResponse("Ошибка: Имя пользователя уже занято!"));
         }
 
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
+        if (!conflicts.isEmpty()) {
             log.warn("Регистрация не удалась: email {} уже используется", signUpRequest.getEmail());
             return ResponseEntity
                     .badRequest()
@@ -129,39 +152,7 @@ public class AuthController {
                 encoder.encode(signUpRequest.getPassword()),
                 signUpRequest.getEmail());
 
-        Set<String> strRoles = signUpRequest.getRole();
-        Set<Role> roles = new HashSet<>();
-
-        if (strRoles == null) {
-            log.debug("Роли не указаны, назначается роль по умолчанию: ROLE_USER");
-            Role userRole = roleRepository.findByName(ERole.ROLE_USER)
-                    .orElseThrow(() -> {
-                        log.error("Роль ROLE_USER не найдена в базе данных");
-                        return new RuntimeException("Ошибка: Роль не найдена.");
-                    });
-            roles.add(userRole);
-        } else {
-            strRoles.forEach(role -> {
-                log.debug("Обработка роли: {}", role);
-				if (role.equals("admin")) {
-					Role adminRole = roleRepository.findByName(ERole.ROLE_ADMIN)
-							.orElseThrow(() -> {
-								log.error("Роль ROLE_ADMIN не найдена в базе данных");
-								return new RuntimeException("Ошибка: Роль не найдена.");
-							});
-					roles.add(adminRole);
-				} else {
-					Role userRole = roleRepository.findByName(ERole.ROLE_USER)
-							.orElseThrow(() -> {
-								log.error("Роль ROLE_USER не найдена в базе данных");
-								return new RuntimeException("Ошибка: Роль не найдена.");
-							});
-					roles.add(userRole);
-				}
-            });
-        }
-
-        user.setRoles(roles);
+        user.setRoles(roleRegistry.resolve(signUpRequest.getRole()));
 
         // Создаем и сохраняем пустую детальную информацию
         UserDetails userDetails = new UserDetails();
@@ -169,7 +160,18 @@ public class AuthController {
 		userDetails.setFirstName(signUpRequest.getFirstName());
 		userDetails.setLastName(signUpRequest.getLastName());
 		user.setUserDetails(userDetails);
-		userRepository.save(user);
+        try {
+            // Уникальные ограничения остаются окончательной проверкой при параллельной регистрации
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Регистрация не удалась: имя пользователя {} или email {} заняты параллельным запросом",
+                    signUpRequest.getUsername(), signUpRequest.getEmail());
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Ошибка: Имя пользователя или email уже заняты!"));
+        }
+        userDetailsService.evict(user.getUsername());
+        eventPublisher.publishEvent(UserDetailsChangedEvent.of(userDetails.getId()));
         log.info("Пользователь {} успешно сохранен в базе данных", user.getUsername());
 
         log.info("Пользователь {} успешно зарегистрирован", signUpRequest.getUsername());
@@ -0,0 +1,127 @@
+package com.telros.telros.controller;
+
+import com.telros.telros.dto.response.MessageResponse;
+import com.telros.telros.security.PhotoUrlSigner;
+import com.telros.telros.service.ETags;
+import com.telros.telros.service.UserPhotoService;
+import com.telros.telros.storage.PhotoBlob;
+import com.telros.telros.storage.PhotoContent;
+import com.telros.telros.storage.PhotoResponseWriter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Контроллер для отдачи фотографий по подписанным ссылкам.
+ * Доступ проверяется только по подписи ссылки, без JWT и обращения к пользователям,
+ * поэтому ответы могут кешироваться прокси до истечения срока действия ссылки.
+ */
+@RestController
+@RequestMapping("/api/photos")
+@Tag(name = "Фотографии", description = "API для получения фотографий по подписанным ссылкам")
+@Slf4j
+@RequiredArgsConstructor
+public class PhotoController {
+
+    private final PhotoUrlSigner photoUrlSigner;
+    private final UserPhotoService userPhotoService;
+    private final PhotoResponseWriter photoResponseWriter;
+
+    /**
+     * Получить фотографию по подписанной ссылке
+     *
+     * @param digest     SHA-256 хеш содержимого
+     * @param expires    время истечения ссылки в секундах эпохи
+     * @param signature  подпись ссылки
+     * @param size       размер уменьшенного варианта или null для исходной фотографии
+     * @param webRequest текущий запрос для проверки условных заголовков
+     * @param request    HTTP-запрос
+     * @param response   HTTP-ответ
+     * @return фотография
+     */
+    @Operation(summary = "Получить фотографию по подписанной ссылке", description = "Получить фотографию по ссылке из поля photoUrl. Ссылка действует ограниченное время и не требует токена")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Фотография успешно получена",
+                    content = {@Content(mediaType = "image/*")}),
+            @ApiResponse(responseCode = "206", description = "Запрошенный диапазон фотографии",
+                    content = {@Content(mediaType = "image/*")}),
+            @ApiResponse(responseCode = "304", description = "Фотография не изменилась",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Подпись неверна или срок действия ссылки истек",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Фотография не найдена",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))})
+    })
+    @GetMapping("/{digest}")
+    public ResponseEntity<?> getPhoto(
+            @Parameter(description = "SHA-256 хеш содержимого", required = true)
+            @PathVariable String digest,
+            @Parameter(description = "Время истечения ссылки", required = true)
+            @RequestParam("exp") long expires,
+            @Parameter(description = "Подпись ссылки", required = true)
+            @RequestParam("sig") String signature,
+            @Parameter(description = "Размер уменьшенного варианта по большей стороне")
+            @RequestParam(required = false) Integer size,
+            WebRequest webRequest,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        if (!photoUrlSigner.verify(digest, expires, signature)) {
+            log.warn("Отклонена ссылка на фотографию {}: неверная подпись или истек срок", digest);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new MessageResponse("Ошибка: Ссылка на фотографию недействительна"));
+        }
+        try {
+            PhotoContent content = userPhotoService.resolvePhotoContentByDigest(digest, size);
+            String eTag = ETags.photo(content.digest());
+
+            // Содержимое по хешу неизменно, поэтому ответ кешируется до истечения срока действия ссылки
+            long remaining = Math.max(0, expires - System.currentTimeMillis() / 1000);
+            CacheControl cacheControl = content.provisional()
+                    ? CacheControl.noCache()
+                    : CacheControl.maxAge(Duration.ofSeconds(remaining)).cachePublic();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+
+            // Содержимое открывается только после проверки условных заголовков, а на HEAD - без кэша
+            boolean head = HttpMethod.HEAD.matches(request.getMethod());
+            PhotoBlob blob = userPhotoService.openPhotoBlob(content, head);
+            response.setContentType(content.contentType());
+            photoResponseWriter.write(blob, eTag, request, response);
+            // Ответ уже записан, тело через ResponseEntity не передается
+            return null;
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Ошибка при чтении фотографии {}: {}", digest, e.getMessage());
+            if (response.isCommitted()) {
+                return null;
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new MessageResponse("Ошибка при чтении фотографии: " + e.getMessage()));
+        }
+    }
+}
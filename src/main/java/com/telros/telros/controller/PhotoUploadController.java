@@ -0,0 +1,218 @@
+package com.telros.telros.controller;
+
+import com.telros.telros.dto.request.PhotoUploadSessionRequest;
+import com.telros.telros.dto.response.MessageResponse;
+import com.telros.telros.dto.response.PhotoUploadSessionResponse;
+import com.telros.telros.service.PhotoUploadSessionService;
+import com.telros.telros.service.UserService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Контроллер загрузки фотографии текущего пользователя по частям.
+ * Подходит для клиентов с нестабильной связью: оборванную загрузку можно продолжить с места обрыва.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600) //Настроить CORS перед продакшеном на наш домен
+@RestController
+@RequestMapping("/api/users/me/photo/uploads")
+@Tag(name = "Загрузка фотографий по частям", description = "API для возобновляемой загрузки фотографии текущего пользователя")
+@SecurityRequirement(name = "bearerAuth")
+@Slf4j
+@RequiredArgsConstructor
+public class PhotoUploadController {
+
+    private final PhotoUploadSessionService photoUploadSessionService;
+    private final UserService userService;
+
+    /**
+     * Начать загрузку фотографии по частям
+     *
+     * @param request имя и полный размер файла
+     * @return состояние загрузки
+     */
+    @Operation(summary = "Начать загрузку по частям", description = "Начать загрузку фотографии текущего пользователя по частям")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Загрузка начата",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PhotoUploadSessionResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Файл слишком большой или слишком много незавершенных загрузок",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content)
+    })
+    @PostMapping
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> startUpload(@Valid @RequestBody PhotoUploadSessionRequest request) {
+        try {
+            Long userDetailsId = currentUserDetailsId();
+            PhotoUploadSessionResponse session = photoUploadSessionService.start(userDetailsId, request.getFileName(), request.getSize());
+            return ResponseEntity.status(HttpStatus.CREATED).body(session);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Ошибка при начале загрузки фотографии: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new MessageResponse("Ошибка при начале загрузки: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Получить состояние загрузки
+     *
+     * @param id идентификатор загрузки
+     * @return полученные диапазоны байт
+     */
+    @Operation(summary = "Состояние загрузки", description = "Получить уже полученные диапазоны байт, чтобы дослать недостающие")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Состояние загрузки",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PhotoUploadSessionResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Загрузка не найдена или истекла",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))})
+    })
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getUpload(
+            @Parameter(description = "Идентификатор загрузки", required = true)
+            @PathVariable String id) {
+        try {
+            return ResponseEntity.ok(photoUploadSessionService.status(currentUserDetailsId(), id));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Передать часть файла. Части можно передавать в любом порядке и повторять.
+     *
+     * @param id           идентификатор загрузки
+     * @param contentRange диапазон байт части
+     * @param request      запрос с содержимым части
+     * @return состояние загрузки
+     */
+    @Operation(summary = "Передать часть файла", description = "Передать диапазон байт файла, указанный в заголовке Content-Range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Часть получена",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PhotoUploadSessionResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Некорректный Content-Range или размер части",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Загрузка не найдена или истекла",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))})
+    })
+    @PutMapping("/{id}")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> uploadChunk(
+            @Parameter(description = "Идентификатор загрузки", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Диапазон байт части, например bytes 0-1048575/5242880", required = true)
+            @RequestHeader(value = HttpHeaders.CONTENT_RANGE, required = false) String contentRange,
+            HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(photoUploadSessionService.writeChunk(
+                    currentUserDetailsId(), id, contentRange, request.getInputStream()));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Ошибка при получении части загрузки {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Ошибка при получении части файла: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Завершить загрузку и сохранить фотографию
+     *
+     * @param id идентификатор загрузки
+     * @return сообщение о результате загрузки
+     */
+    @Operation(summary = "Завершить загрузку", description = "Собрать полученные части и сохранить фотографию текущего пользователя")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Фотография успешно загружена",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Получены не все части файла",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Загрузка не найдена или истекла",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))})
+    })
+    @PostMapping("/{id}/commit")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> commitUpload(
+            @Parameter(description = "Идентификатор загрузки", required = true)
+            @PathVariable String id) {
+        try {
+            photoUploadSessionService.commit(currentUserDetailsId(), id);
+            return ResponseEntity.ok(new MessageResponse("Фотография успешно загружена"));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Ошибка при завершении загрузки {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Ошибка при загрузке файла: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Отменить загрузку
+     *
+     * @param id идентификатор загрузки
+     * @return сообщение о результате отмены
+     */
+    @Operation(summary = "Отменить загрузку", description = "Отменить загрузку и удалить полученные части")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Загрузка отменена",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Загрузка не найдена или истекла",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))})
+    })
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> cancelUpload(
+            @Parameter(description = "Идентификатор загрузки", required = true)
+            @PathVariable String id) {
+        try {
+            photoUploadSessionService.cancel(currentUserDetailsId(), id);
+            return ResponseEntity.ok(new MessageResponse("Загрузка отменена"));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    private Long currentUserDetailsId() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userService.getUserDetailsIdByUsername(username);
+    }
+}
@@ -1,12 +1,24 @@
 package com.telros.telros.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.telros.telros.dto.response.BulkUpdateResponse;
+import com.telros.telros.dto.response.UserBatchResponse;
+import com.telros.telros.dto.response.UserPageResponse;
 import com.telros.telros.dto.response.UserResponse;
+import com.telros.telros.dto.response.Versioned;
+import com.telros.telros.exception.PreconditionFailedException;
 import com.telros.telros.model.UserPhoto;
 import com.telros.telros.dto.request.UserDetailsRequest;
 import com.telros.telros.dto.response.MessageResponse;
 import com.telros.telros.dto.response.UserDetailsResponse;
+import com.telros.telros.service.ETags;
+import com.telros.telros.service.UserBulkUpdateService;
+import com.telros.telros.service.UserExportService;
 import com.telros.telros.service.UserPhotoService;
 import com.telros.telros.service.UserService;
+import com.telros.telros.storage.PhotoBlob;
+import com.telros.telros.storage.PhotoContent;
+import com.telros.telros.storage.PhotoResponseWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,10 +28,17 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -27,9 +46,13 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -46,13 +69,23 @@ public class UserController {
 
     private final UserService userService;
     private final UserPhotoService userPhotoService;
+    private final UserExportService userExportService;
+    private final UserBulkUpdateService userBulkUpdateService;
+    private final PhotoResponseWriter photoResponseWriter;
+
+    @Value("${photo.http.max-age:5m}")
+    private Duration photoMaxAge;
+
+    @Value("${users.export.timeout:30m}")
+    private Duration exportTimeout;
 
     /**
      * Получить список всех пользователей
      *
      * @return список пользователей с детальной информацией
      */
-    @Operation(summary = "Получить список всех пользователей", description = "Получить список всех пользователей с их детальной информацией")
+    @Operation(summary = "Получить список всех пользователей", description = "Получить список всех пользователей с их детальной информацией. "
+            + "Для больших справочников используйте постраничный запрос /api/users/page", deprecated = true)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Список пользователей успешно получен",
                     content = {@Content(mediaType = "application/json",
@@ -69,17 +102,145 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    /**
+     * Получить страницу пользователей
+     *
+     * @param size         размер страницы
+     * @param cursor       курсор следующей страницы
+     * @param sort         поле сортировки
+     * @param direction    направление сортировки
+     * @param includeTotal вернуть общее количество пользователей
+     * @return страница пользователей с курсором следующей страницы
+     */
+    @Operation(summary = "Получить страницу пользователей", description = "Постраничное получение пользователей по курсору с сортировкой по id, username или email")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница пользователей успешно получена",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = UserPageResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Некорректные параметры страницы",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content)
+    })
+    @GetMapping("/page")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserPageResponse> getUsersPage(
+            @Parameter(description = "Размер страницы") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Курсор, полученный с предыдущей страницей") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Поле сортировки: id, username, email") @RequestParam(defaultValue = "id") String sort,
+            @Parameter(description = "Направление сортировки: asc, desc") @RequestParam(defaultValue = "asc") String direction,
+            @Parameter(description = "Вернуть общее количество пользователей (может быть оценочным)") @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("Запрос на получение страницы пользователей");
+        UserPageResponse page = userService.getUsersPage(sort, direction, cursor, size, includeTotal);
+        log.info("Страница пользователей успешно получена, количество: {}", page.getItems().size());
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Найти пользователей
+     *
+     * @param q     текст запроса: фамилия, имя, отчество, телефон или email, допускаются начала слов и опечатки
+     * @param limit максимальное количество результатов
+     * @return найденные пользователи в порядке релевантности
+     */
+    @Operation(summary = "Поиск пользователей", description = "Полнотекстовый поиск пользователей по ФИО, телефону и email с поиском по префиксу и с учетом опечаток")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Поиск выполнен",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = UserResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Пустой запрос или некорректный лимит",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content)
+    })
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<List<UserResponse>> searchUsers(
+            @Parameter(description = "Текст запроса", required = true) @RequestParam String q,
+            @Parameter(description = "Максимальное количество результатов") @RequestParam(required = false) Integer limit) {
+        log.info("Запрос на поиск пользователей: {}", q);
+        List<UserResponse> users = userService.searchUsers(q, limit);
+        log.info("Поиск пользователей выполнен, найдено: {}", users.size());
+        return ResponseEntity.ok(users);
+    }
+
+    /**
+     * Получить несколько пользователей одним запросом
+     *
+     * @param ids       ID пользователей
+     * @param usernames имена пользователей
+     * @return результаты по каждому ID и имени
+     */
+    @Operation(summary = "Получить несколько пользователей", description = "Получить пользователей по списку ID и/или имен одним запросом")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пользователи получены",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = UserBatchResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Не переданы ключи или их слишком много",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content)
+    })
+    @GetMapping("/batch")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<UserBatchResponse> getUsersBatch(
+            @Parameter(description = "ID пользователей через запятую") @RequestParam(required = false) List<Long> ids,
+            @Parameter(description = "Имена пользователей через запятую") @RequestParam(required = false) List<String> usernames) {
+        log.info("Запрос на пакетное получение пользователей");
+        return ResponseEntity.ok(userService.getUsersBatch(ids, usernames));
+    }
+
+    /**
+     * Выгрузить всех пользователей потоком.
+     * Выгрузка может идти дольше обычного асинхронного запроса, поэтому ограничена отдельным таймаутом users.export.timeout.
+     *
+     * @param format   формат выгрузки: ndjson или csv
+     * @param response ответ, в который пишутся пользователи
+     * @return задача выгрузки, по одному пользователю на строку
+     */
+    @Operation(summary = "Выгрузить всех пользователей", description = "Потоковая выгрузка всех пользователей в формате NDJSON или CSV (только для администраторов)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Выгрузка начата",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "400", description = "Неподдерживаемый формат",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content)
+    })
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public WebAsyncTask<Void> exportUsers(
+            @Parameter(description = "Формат выгрузки: ndjson, csv") @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) {
+        UserExportService.Format exportFormat = UserExportService.Format.fromName(format);
+        log.info("Запрос на выгрузку пользователей в формате {}", exportFormat);
+        response.setContentType(exportFormat.getMediaType().toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"users." + exportFormat.name().toLowerCase() + "\"");
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            userExportService.export(exportFormat, response.getOutputStream());
+            return null;
+        });
+    }
+
     /**
      * Получить детальную информацию о пользователе по ID
      *
-     * @param id ID пользователя
+     * @param id         ID пользователя
+     * @param webRequest запрос для проверки If-None-Match
      * @return детальная информация о пользователе
      */
-    @Operation(summary = "Получить детальную информацию о пользователе", description = "Получить детальную информацию о пользователе по ID")
+    @Operation(summary = "Получить детальную информацию о пользователе", description = "Получить детальную информацию о пользователе по ID. Поддерживает If-None-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Информация о пользователе успешно получена",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = UserDetailsResponse.class))}),
+            @ApiResponse(responseCode = "304", description = "Информация не изменилась",
+                    content = @Content),
             @ApiResponse(responseCode = "404", description = "Пользователь не найден",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = MessageResponse.class))}),
@@ -90,12 +251,17 @@ public class UserController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getUserDetails(
             @Parameter(description = "ID пользователя", required = true)
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            WebRequest webRequest) {
         log.info("Запрос на получение пользователя с ID: {}", id);
         try {
-            UserDetailsResponse userDetails = userService.getUserDetailsById(id);
+            Versioned<UserDetailsResponse> userDetails = userService.getVersionedUserDetailsById(id);
+            if (webRequest.checkNotModified(userDetails.getETag())) {
+                log.info("Пользователь с ID {} не изменился", id);
+                return null;
+            }
             log.info("Пользователь с ID {} успешно найден", id);
-            return ResponseEntity.ok(userDetails);
+            return ResponseEntity.ok().eTag(userDetails.getETag()).body(userDetails.getBody());
         } catch (EntityNotFoundException e) {
             log.error("Пользователь с ID {} не найден", id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -106,13 +272,16 @@ public class UserController {
     /**
      * Получить детальную информацию о текущем пользователе
      *
+     * @param webRequest запрос для проверки If-None-Match
      * @return детальная информация о текущем пользователе
      */
-    @Operation(summary = "Получить детальную информацию о текущем пользователе", description = "Получить детальную информацию о текущем аутентифицированном пользователе")
+    @Operation(summary = "Получить детальную информацию о текущем пользователе", description = "Получить детальную информацию о текущем аутентифицированном пользователе. Поддерживает If-None-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Информация о пользователе успешно получена",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = UserDetailsResponse.class))}),
+            @ApiResponse(responseCode = "304", description = "Информация не изменилась",
+                    content = @Content),
             @ApiResponse(responseCode = "404", description = "Информация о пользователе не найдена",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = MessageResponse.class))}),
@@ -121,14 +290,18 @@ public class UserController {
     })
     @GetMapping("/me")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
-    public ResponseEntity<?> getCurrentUserDetails() {
+    public ResponseEntity<?> getCurrentUserDetails(WebRequest webRequest) {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             String username = authentication.getName();
             log.info("Запрос на получение информации о текущем пользователе: {}", username);
-            UserDetailsResponse userDetails = userService.getUserDetailsByUsername(username);
+            Versioned<UserDetailsResponse> userDetails = userService.getVersionedUserDetailsByUsername(username);
+            if (webRequest.checkNotModified(userDetails.getETag())) {
+                log.info("Информация о текущем пользователе {} не изменилась", username);
+                return null;
+            }
             log.info("Информация о текущем пользователе {} успешно получена", username);
-            return ResponseEntity.ok(userDetails);
+            return ResponseEntity.ok().eTag(userDetails.getETag()).body(userDetails.getBody());
         } catch (Exception e) {
             log.error("Ошибка при получении информации о текущем пользователе: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -140,29 +313,37 @@ public class UserController {
      * Создать или обновить детальную информацию о текущем пользователе
      *
      * @param userDetailsRequest данные для создания/обновления
+     * @param ifMatch            ETag версии, которую изменяет клиент
      * @return обновленная детальная информация о пользователе
      */
-    @Operation(summary = "Создать или обновить детальную информацию о текущем пользователе", description = "Создать или обновить детальную информацию о текущем аутентифицированном пользователе")
+    @Operation(summary = "Создать или обновить детальную информацию о текущем пользователе", description = "Создать или обновить детальную информацию о текущем аутентифицированном пользователе. Поддерживает If-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Информация о пользователе успешно обновлена",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = UserDetailsResponse.class))}),
             @ApiResponse(responseCode = "400", description = "Ошибка валидации",
                     content = @Content),
+            @ApiResponse(responseCode = "412", description = "Данные изменены после получения версии из If-Match",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
             @ApiResponse(responseCode = "403", description = "Доступ запрещен",
                     content = @Content)
     })
     @PostMapping("/me")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> createOrUpdateCurrentUserDetails(
-            @Valid @RequestBody UserDetailsRequest userDetailsRequest) {
+            @Valid @RequestBody UserDetailsRequest userDetailsRequest,
+            @Parameter(description = "ETag изменяемой версии") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             String username = authentication.getName();
             log.info("Запрос на создание/обновление информации о текущем пользователе: {}", username);
-            UserDetailsResponse userDetails = userService.createOrUpdateUserDetails(username, userDetailsRequest);
+            Versioned<UserDetailsResponse> userDetails = userService.createOrUpdateUserDetails(username, userDetailsRequest, ifMatch);
             log.info("Информация о пользователе {} успешно обновлена", username);
-            return ResponseEntity.ok(userDetails);
+            return ResponseEntity.ok().eTag(userDetails.getETag()).body(userDetails.getBody());
+        } catch (PreconditionFailedException | OptimisticLockingFailureException e) {
+            // 412 и 409 формирует GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("Ошибка при обновлении информации о пользователе: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -175,9 +356,10 @@ public class UserController {
      *
      * @param id                 ID пользователя
      * @param userDetailsRequest данные для обновления
+     * @param ifMatch            ETag версии, которую изменяет клиент
      * @return обновленная детальная информация о пользователе
      */
-    @Operation(summary = "Обновить детальную информацию о пользователе", description = "Обновить детальную информацию о пользователе по ID (только для администраторов)")
+    @Operation(summary = "Обновить детальную информацию о пользователе", description = "Обновить детальную информацию о пользователе по ID (только для администраторов). Поддерживает If-Match")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Информация о пользователе успешно обновлена",
                     content = {@Content(mediaType = "application/json",
@@ -187,6 +369,9 @@ public class UserController {
             @ApiResponse(responseCode = "404", description = "Пользователь не найден",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "412", description = "Данные изменены после получения версии из If-Match",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
             @ApiResponse(responseCode = "403", description = "Доступ запрещен",
                     content = @Content)
     })
@@ -195,16 +380,20 @@ public class UserController {
     public ResponseEntity<?> updateUserDetails(
             @Parameter(description = "ID пользователя", required = true)
             @PathVariable Long id,
-            @Valid @RequestBody UserDetailsRequest userDetailsRequest) {
+            @Valid @RequestBody UserDetailsRequest userDetailsRequest,
+            @Parameter(description = "ETag изменяемой версии") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
             log.info("Запрос на обновление информации о пользователе с ID: {}", id);
-            UserDetailsResponse userDetails = userService.updateUserDetailsById(id, userDetailsRequest);
+            Versioned<UserDetailsResponse> userDetails = userService.updateUserDetailsById(id, userDetailsRequest, ifMatch);
             log.info("Информация о пользователе с ID {} успешно обновлена", id);
-            return ResponseEntity.ok(userDetails);
+            return ResponseEntity.ok().eTag(userDetails.getETag()).body(userDetails.getBody());
         } catch (EntityNotFoundException e) {
             log.error("Пользователь с ID {} не найден при попытке обновления: {}", id, e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new MessageResponse(e.getMessage()));
+        } catch (PreconditionFailedException | OptimisticLockingFailureException e) {
+            // 412 и 409 формирует GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("Ошибка при обновлении информации о пользователе с ID {}: {}", id, e.getMessage());
             return ResponseEntity.badRequest()
@@ -212,6 +401,33 @@ public class UserController {
         }
     }
 
+    /**
+     * Частично обновить детальную информацию нескольких пользователей (только для администраторов)
+     *
+     * @param items изменения в формате JSON Merge Patch с полем id и необязательным полем version
+     * @return результаты по каждому элементу
+     */
+    @Operation(summary = "Пакетное частичное обновление пользователей", description = "Изменить только переданные поля у нескольких пользователей одним запросом (только для администраторов). "
+            + "Отсутствующее поле не меняется, null очищает значение")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Пакет обработан",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BulkUpdateResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Пакет пуст или слишком велик",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен",
+                    content = @Content)
+    })
+    @PatchMapping(consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkUpdateResponse> bulkUpdateUserDetails(@RequestBody List<JsonNode> items) {
+        log.info("Запрос на пакетное обновление пользователей");
+        BulkUpdateResponse response = userBulkUpdateService.update(items);
+        log.info("Пакетное обновление выполнено: изменено {}, отклонено {}", response.getUpdated(), response.getFailed());
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Удалить пользователя по ID (только для администраторов)
      *
@@ -247,18 +463,33 @@ public class UserController {
     }
 
     /**
-     * Получить фотографию пользователя по ID
+     * Получить фотографию пользователя по ID.
+     * Ответ содержит ETag по хешу содержимого и Last-Modified по дате загрузки, на условные запросы
+     * возвращается 304, поддерживаются запросы диапазона байт и HEAD без чтения содержимого.
      *
-     * @param id ID пользователя
+     * @param id         ID пользователя
+     * @param size       размер уменьшенного варианта или null для исходной фотографии
+     * @param webRequest текущий запрос для проверки условных заголовков
+     * @param request    HTTP-запрос
+     * @param response   HTTP-ответ
      * @return фотография пользователя
      */
-    @Operation(summary = "Получить фотографию пользователя", description = "Получить фотографию пользователя по ID")
+    @Operation(summary = "Получить фотографию пользователя", description = "Получить фотографию пользователя или ее уменьшенный вариант по ID. Пока вариант строится, отдается исходная фотография")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Фотография пользователя успешно получена",
                     content = {@Content(mediaType = "image/*")}),
+            @ApiResponse(responseCode = "206", description = "Запрошенный диапазон фотографии",
+                    content = {@Content(mediaType = "image/*")}),
+            @ApiResponse(responseCode = "304", description = "Фотография не изменилась",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Недопустимый размер варианта",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MessageResponse.class))}),
             @ApiResponse(responseCode = "404", description = "Пользователь или фотография не найдены",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = MessageResponse.class))}),
+            @ApiResponse(responseCode = "416", description = "Запрошенный диапазон недостижим",
+                    content = @Content),
             @ApiResponse(responseCode = "403", description = "Доступ запрещен",
                     content = @Content)
     })
@@ -266,20 +497,57 @@ public class UserController {
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getUserPhoto(
             @Parameter(description = "ID пользователя", required = true)
-            @PathVariable Long id) {
+            @PathVariable Long id,
+            @Parameter(description = "Размер уменьшенного варианта по большей стороне, например 48, 128 или 512; по умолчанию - оптимизированная копия без EXIF")
+            @RequestParam(required = false) Integer size,
+            WebRequest webRequest,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             log.info("Запрос на получение фотографии пользователя с ID: {}", id);
             UserPhoto userPhoto = userPhotoService.getUserPhoto(id);
-            log.info("Фотография пользователя с ID {} успешно получена", id);
             log.debug("Тип контента: {}, имя файла: {}", userPhoto.getFileType(), userPhoto.getFileName());
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + userPhoto.getFileName() + "\"")
-                    .contentType(MediaType.parseMediaType(userPhoto.getFileType()))
-                    .body(userPhoto.getData());
+            PhotoContent content = userPhotoService.resolvePhotoContent(userPhoto, size);
+            String eTag = ETags.photo(content.digest());
+            long lastModified = userPhoto.getUploadDate().getTime();
+            if (content.lastModified() >= 0) {
+                // Вариант заменяет исходную фотографию и должен отличаться от нее по Last-Modified хотя бы на секунду
+                lastModified = Math.max(content.lastModified(), (lastModified / 1000 + 1) * 1000);
+            }
+
+            // Пока вариант не построен, ответ не кешируется, чтобы клиент получил его при следующем запросе
+            CacheControl cacheControl = content.provisional()
+                    ? CacheControl.noCache()
+                    : CacheControl.maxAge(photoMaxAge).mustRevalidate();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.cachePrivate().getHeaderValue());
+            if (webRequest.checkNotModified(eTag, lastModified)) {
+                log.info("Фотография пользователя с ID {} не изменилась", id);
+                return null;
+            }
+
+            // Содержимое открывается только после проверки условных заголовков, а на HEAD - без кэша
+            boolean head = HttpMethod.HEAD.matches(request.getMethod());
+            PhotoBlob blob = userPhotoService.openPhotoBlob(content, head);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                    .filename(userPhoto.getFileName(), StandardCharsets.UTF_8)
+                    .build()
+                    .toString());
+            response.setContentType(content.contentType());
+            photoResponseWriter.write(blob, eTag, request, response);
+            log.info("Фотография пользователя с ID {} успешно получена", id);
+            // Ответ уже записан, тело через ResponseEntity не передается
+            return null;
         } catch (EntityNotFoundException e) {
             log.error("Фотография пользователя с ID {} не найдена: {}", id, e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Ошибка при чтении фотографии пользователя с ID {}: {}", id, e.getMessage());
+            if (response.isCommitted()) {
+                return null;
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new MessageResponse("Ошибка при чтении фотографии: " + e.getMessage()));
         }
     }
 
@@ -317,8 +585,7 @@ public class UserController {
             log.info("Запрос на загрузку фотографии для текущего пользователя: {}", username);
             log.debug("Размер загружаемого файла: {} байт, тип: {}", file.getSize(), file.getContentType());
 
-            UserDetailsResponse userDetails = userService.getUserDetailsByUsername(username);
-            userPhotoService.uploadUserPhoto(userDetails.getId(), file);
+            userPhotoService.uploadUserPhoto(userService.getUserDetailsIdByUsername(username), file);
             log.info("Фотография для пользователя {} успешно загружена", username);
             return ResponseEntity.ok(new MessageResponse("Фотография успешно загружена"));
         } catch (EntityNotFoundException e) {
@@ -0,0 +1,22 @@
+package com.telros.telros.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * DTO для запроса на начало загрузки фотографии по частям
+ */
+@Data
+public class PhotoUploadSessionRequest {
+
+    @NotBlank
+    @Size(max = 255)
+    private String fileName; // Имя файла
+
+    @NotNull
+    @Positive
+    private Long size; // Полный размер файла в байтах
+}
@@ -0,0 +1,20 @@
+package com.telros.telros.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO для ответа на пакетную регистрацию пользователей
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRegistrationResponse {
+
+    private int created; // Количество созданных пользователей
+    private int failed; // Количество отклоненных записей
+    private List<BatchRegistrationResult> results; // Результаты по каждой записи
+}
@@ -0,0 +1,30 @@
+package com.telros.telros.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO с результатом регистрации одного пользователя в пакете
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRegistrationResult {
+
+    /**
+     * Результат регистрации
+     */
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID,
+        FAILED
+    }
+
+    private int index; // Позиция в запросе
+    private String username; // Имя пользователя
+    private Status status; // Результат
+    private Long id; // ID созданного пользователя
+    private String message; // Причина ошибки
+}
@@ -0,0 +1,20 @@
+package com.telros.telros.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO для ответа на пакетное частичное обновление пользователей
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUpdateResponse {
+
+    private int updated; // Количество измененных пользователей
+    private int failed; // Количество отклоненных записей
+    private List<BulkUpdateResult> results; // Результаты по каждой записи
+}
@@ -0,0 +1,29 @@
+package com.telros.telros.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO с результатом изменения одного пользователя при пакетном обновлении
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUpdateResult {
+
+    /**
+     * Результат изменения
+     */
+    public enum Status {
+        UPDATED,
+        NOT_FOUND,
+        INVALID,
+        CONFLICT
+    }
+
+    private int index; // Позиция в запросе
+    private Long id; // ID детальной информации
+    private Status status; // Результат
+    private String message; // Причина ошибки
+}
@@ -0,0 +1,24 @@
+package com.telros.telros.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * DTO для ответа с состоянием загрузки фотографии по частям
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhotoUploadSessionResponse {
+
+    private String id; // Идентификатор загрузки
+    private String fileName; // Имя файла
+    private long size; // Полный размер файла в байтах
+    private long received; // Получено байт
+    private List<String> ranges; // Полученные диапазоны байт, например 0-1048575
+    private Instant expiresAt; // Время, после которого незавершенная загрузка удаляется
+}
@@ -0,0 +1,19 @@
+package com.telros.telros.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * DTO для ответа на пакетное получение пользователей
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchResponse {
+
+    private Map<Long, UserLookupResult> ids; // Результаты по ID детальной информации
+    private Map<String, UserLookupResult> usernames; // Результаты по именам пользователей
+}
@@ -0,0 +1,23 @@
+package com.telros.telros.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO с результатом поиска одного пользователя при пакетном получении
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserLookupResult {
+
+    private boolean found; // Пользователь найден
+    private UserResponse user; // Пользователь, если найден
+
+    public static UserLookupResult of(UserResponse user) {
+        return user == null ? new UserLookupResult(false, null) : new UserLookupResult(true, user);
+    }
+}
@@ -0,0 +1,21 @@
+package com.telros.telros.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO для ответа со страницей пользователей
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageResponse {
+
+    private List<UserResponse> items; // Пользователи на странице
+    private String nextCursor; // Курсор следующей страницы, null если страница последняя
+    private Long total; // Общее количество пользователей, если запрошено
+    private boolean totalEstimated; // Количество получено по статистике СУБД, а не точным подсчетом
+}
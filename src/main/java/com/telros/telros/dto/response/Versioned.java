@@ -0,0 +1,44 @@
+package com.telros.telros.dto.response;
+
+import java.util.function.Supplier;
+
+/**
+ * Ответ вместе с его ETag.
+ * Тело может формироваться лениво, чтобы при совпадении If-None-Match не выполнять маппинг.
+ *
+ * @param <T> тип тела ответа
+ */
+public final class Versioned<T> {
+
+    private final String eTag;
+    private final Supplier<T> body;
+
+    private Versioned(String eTag, Supplier<T> body) {
+        this.eTag = eTag;
+        this.body = body;
+    }
+
+    /**
+     * @param eTag ETag ответа
+     * @param body готовое тело ответа
+     */
+    public static <T> Versioned<T> of(String eTag, T body) {
+        return new Versioned<>(eTag, () -> body);
+    }
+
+    /**
+     * @param eTag ETag ответа
+     * @param body функция, формирующая тело ответа по требованию
+     */
+    public static <T> Versioned<T> lazy(String eTag, Supplier<T> body) {
+        return new Versioned<>(eTag, body);
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public T getBody() {
+        return body.get();
+    }
+}
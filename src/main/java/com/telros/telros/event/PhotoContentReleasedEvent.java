@@ -0,0 +1,9 @@
+package com.telros.telros.event;
+
+/**
+ * Событие освобождения содержимого фотографии: фотография удалена или заменена другой
+ *
+ * @param digest SHA-256 хеш освобожденного содержимого
+ */
+public record PhotoContentReleasedEvent(String digest) {
+}
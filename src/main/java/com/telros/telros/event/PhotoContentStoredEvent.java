@@ -0,0 +1,9 @@
+package com.telros.telros.event;
+
+/**
+ * Событие сохранения нового содержимого фотографии
+ *
+ * @param digest SHA-256 хеш сохраненного содержимого
+ */
+public record PhotoContentStoredEvent(String digest) {
+}
@@ -0,0 +1,16 @@
+package com.telros.telros.event;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Событие создания или изменения детальной информации пользователей
+ *
+ * @param detailsIds ID измененной детальной информации
+ */
+public record UserDetailsChangedEvent(Collection<Long> detailsIds) {
+
+    public static UserDetailsChangedEvent of(Long detailsId) {
+        return new UserDetailsChangedEvent(List.of(detailsId));
+    }
+}
@@ -0,0 +1,9 @@
+package com.telros.telros.event;
+
+/**
+ * Событие удаления детальной информации пользователя
+ *
+ * @param detailsId ID удаленной детальной информации
+ */
+public record UserDetailsDeletedEvent(Long detailsId) {
+}
@@ -3,6 +3,9 @@ package com.telros.telros.exception;
 import com.telros.telros.dto.response.MessageResponse;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -21,6 +24,7 @@ import java.util.Map;
  * Глобальный обработчик исключений для контроллеров
  */
 @ControllerAdvice
+@Slf4j
 public class GlobalExceptionHandler {
 
     /**
@@ -61,6 +65,61 @@ public class GlobalExceptionHandler {
                 .body(new MessageResponse(ex.getMessage()));
     }
 
+    /**
+     * Обработка исключения ServiceOverloadedException
+     *
+     * @param ex      исключение
+     * @param request запрос
+     * @return ответ с сообщением об ошибке и заголовком Retry-After
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<MessageResponse> handleServiceOverloadedException(ServiceOverloadedException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new MessageResponse(ex.getMessage()));
+    }
+
+    /**
+     * Обработка исключения LoginBlockedException
+     *
+     * @param ex      исключение
+     * @param request запрос
+     * @return ответ с сообщением об ошибке и заголовком Retry-After
+     */
+    @ExceptionHandler(LoginBlockedException.class)
+    public ResponseEntity<MessageResponse> handleLoginBlockedException(LoginBlockedException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(new MessageResponse(ex.getMessage()));
+    }
+
+    /**
+     * Обработка исключения PreconditionFailedException
+     *
+     * @param ex      исключение
+     * @param request запрос
+     * @return ответ с сообщением об ошибке
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<MessageResponse> handlePreconditionFailedException(PreconditionFailedException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(new MessageResponse(ex.getMessage()));
+    }
+
+    /**
+     * Обработка конфликта оптимистической блокировки при параллельном изменении
+     *
+     * @param ex      исключение
+     * @param request запрос
+     * @return ответ с сообщением об ошибке
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<MessageResponse> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex, WebRequest request) {
+        log.warn("Параллельное изменение данных: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new MessageResponse("Ошибка: Данные были изменены параллельным запросом, повторите попытку"));
+    }
+
     /**
      * Обработка исключения UsernameNotFoundException
      *
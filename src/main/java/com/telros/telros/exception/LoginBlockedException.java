@@ -0,0 +1,17 @@
+package com.telros.telros.exception;
+
+/**
+ * Исключение, выбрасываемое когда вход временно заблокирован из-за неудачных попыток
+ */
+public class LoginBlockedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public LoginBlockedException(long retryAfterSeconds) {
+        super("Слишком много неудачных попыток входа, повторите попытку позже");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
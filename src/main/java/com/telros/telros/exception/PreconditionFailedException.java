@@ -0,0 +1,11 @@
+package com.telros.telros.exception;
+
+/**
+ * Исключение, выбрасываемое когда условие If-Match не выполнено:
+ * ресурс был изменен после того, как клиент получил его версию
+ */
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package com.telros.telros.exception;
+
+/**
+ * Исключение, выбрасываемое когда сервис временно перегружен и запрос отклонен
+ */
+public class ServiceOverloadedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -5,16 +5,23 @@ import com.telros.telros.model.UserDetails;
 import com.telros.telros.dto.request.UserDetailsRequest;
 import com.telros.telros.dto.response.UserDetailsResponse;
 import com.telros.telros.dto.response.UserResponse;
+import com.telros.telros.repository.projection.UserRow;
+import com.telros.telros.security.PhotoUrlSigner;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
 import org.mapstruct.Named;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
- * Маппер для преобразования между сущностями и DTO
+ * Маппер для преобразования между сущностями и DTO.
+ * Ссылки на фотографии подписываются {@link PhotoUrlSigner}, поэтому маппер - абстрактный класс с внедряемым подписчиком.
  */
 @Mapper(componentModel = "spring")
-public interface UserMapper {
+public abstract class UserMapper {
+
+    @Autowired
+    protected PhotoUrlSigner photoUrlSigner;
 
     /**
      * Преобразует User в UserResponse
@@ -23,7 +30,7 @@ public interface UserMapper {
      * @return DTO UserResponse
      */
     @Mapping(target = "userDetails", expression = "java(userDetailsToUserDetailsResponse(user.getUserDetails()))")
-    UserResponse userToUserResponse(User user);
+    public abstract UserResponse userToUserResponse(User user);
 
     /**
      * Преобразует UserDetails в UserDetailsResponse
@@ -34,7 +41,40 @@ public interface UserMapper {
     @Mapping(target = "email", source = "user.email")
     @Mapping(target = "hasPhoto", expression = "java(userDetails.getUserPhoto() != null)")
     @Mapping(target = "photoUrl", expression = "java(getPhotoUrl(userDetails))")
-    UserDetailsResponse userDetailsToUserDetailsResponse(UserDetails userDetails);
+    public abstract UserDetailsResponse userDetailsToUserDetailsResponse(UserDetails userDetails);
+
+    /**
+     * Преобразует проекцию UserRow в UserResponse
+     *
+     * @param row проекция пользователя
+     * @return DTO UserResponse
+     */
+    public UserResponse userRowToUserResponse(UserRow row) {
+        return new UserResponse(row.id(), row.username(), row.email(), userRowToUserDetailsResponse(row));
+    }
+
+    /**
+     * Преобразует проекцию UserRow в UserDetailsResponse
+     *
+     * @param row проекция пользователя
+     * @return DTO UserDetailsResponse или null, если детальная информация отсутствует
+     */
+    public UserDetailsResponse userRowToUserDetailsResponse(UserRow row) {
+        if (row.detailsId() == null) {
+            return null;
+        }
+        boolean hasPhoto = Boolean.TRUE.equals(row.hasPhoto());
+        return new UserDetailsResponse(
+                row.detailsId(),
+                row.lastName(),
+                row.firstName(),
+                row.middleName(),
+                row.birthDate(),
+                row.email(),
+                row.phoneNumber(),
+                hasPhoto,
+                hasPhoto ? photoUrlSigner.sign(row.photoDigest()) : null);
+    }
 
     /**
      * Обновляет UserDetails из UserDetailsRequest
@@ -42,19 +82,19 @@ public interface UserMapper {
      * @param userDetailsRequest DTO с данными для обновления
      * @param userDetails сущность для обновления
      */
-    void updateUserDetailsFromRequest(UserDetailsRequest userDetailsRequest, @MappingTarget UserDetails userDetails);
+    public abstract void updateUserDetailsFromRequest(UserDetailsRequest userDetailsRequest, @MappingTarget UserDetails userDetails);
 
     /**
-     * Получает URL фотографии пользователя
+     * Получает подписанный URL фотографии пользователя с ограниченным сроком действия
      *
      * @param userDetails сущность UserDetails
      * @return URL фотографии или null
      */
     @Named("getPhotoUrl")
-    default String getPhotoUrl(UserDetails userDetails) {
+    public String getPhotoUrl(UserDetails userDetails) {
         if (userDetails == null || userDetails.getUserPhoto() == null) {
             return null;
         }
-        return "/api/users/" + userDetails.getId() + "/photo";
+        return photoUrlSigner.sign(userDetails.getUserPhoto().getContentDigest());
     }
 }
\ No newline at end of file
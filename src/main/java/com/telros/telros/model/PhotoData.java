@@ -0,0 +1,36 @@
+package com.telros.telros.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.Length;
+
+import java.sql.Timestamp;
+
+/**
+ * Содержимое фотографии, хранящееся в базе данных.
+ * Отделено от метаданных {@link UserPhoto}: строка читается только при отдаче содержимого
+ * и одна на все фотографии с одинаковым содержимым. Запись и чтение выполняются через JDBC
+ * в {@link com.telros.telros.storage.DatabasePhotoStorage}, чтобы не загружать содержимое через контекст персистентности.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "photo_data")
+public class PhotoData {
+
+    @Id
+    @Column(name = "digest", length = 64)
+    private String digest; // SHA-256 хеш содержимого
+
+    @Column(name = "data", nullable = false, length = Length.LONG32)
+    private byte[] data;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt = new Timestamp(System.currentTimeMillis());
+}
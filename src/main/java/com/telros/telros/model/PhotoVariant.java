@@ -0,0 +1,50 @@
+package com.telros.telros.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * Уменьшенный вариант фотографии.
+ * Привязан к хешу исходного содержимого, поэтому общий для всех фотографий с одинаковым содержимым.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "photo_variants",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"source_digest", "size"}))
+public class PhotoVariant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "photo_variants_seq")
+    @SequenceGenerator(name = "photo_variants_seq", sequenceName = "photo_variants_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "source_digest", nullable = false, length = 64)
+    private String sourceDigest; // SHA-256 хеш исходной фотографии
+
+    @Column(name = "size", nullable = false)
+    private Integer size; // Максимальная сторона варианта в пикселях
+
+    @Column(name = "content_digest", nullable = false, length = 64)
+    private String contentDigest; // SHA-256 хеш содержимого варианта в хранилище фотографий
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "width", nullable = false)
+    private Integer width;
+
+    @Column(name = "height", nullable = false)
+    private Integer height;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt = new Timestamp(System.currentTimeMillis());
+}
@@ -20,9 +20,14 @@ import java.time.LocalDate;
 public class UserDetails {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_details_seq")
+    @SequenceGenerator(name = "user_details_seq", sequenceName = "user_details_seq", allocationSize = 50)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version; // Версия записи для оптимистической блокировки
+
     @NotBlank
     @Size(max = 50)
     @Column(name = "last_name")
@@ -8,7 +8,8 @@ import lombok.NoArgsConstructor;
 import java.sql.Timestamp;
 
 /**
- * Модель для хранения фотографии пользователя
+ * Метаданные фотографии пользователя.
+ * Само содержимое лежит в хранилище фотографий и адресуется хешем {@link #contentDigest}.
  */
 @Data
 @NoArgsConstructor
@@ -18,12 +19,16 @@ import java.sql.Timestamp;
 public class UserPhoto {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_photos_seq")
+    @SequenceGenerator(name = "user_photos_seq", sequenceName = "user_photos_seq", allocationSize = 50)
     private Long id;
 
-    @Lob
-    @Column(name = "data")
-    private byte[] data;
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version; // Версия записи для оптимистической блокировки
+
+    @Column(name = "content_digest", nullable = false, length = 64)
+    private String contentDigest; // SHA-256 хеш содержимого в хранилище фотографий
 
     @Column(name = "file_name")
     private String fileName;
@@ -34,6 +39,12 @@ public class UserPhoto {
     @Column(name = "file_type")
     private String fileType;
 
+    @Column(name = "width")
+    private Integer width; // Ширина изображения в пикселях, если формат распознан
+
+    @Column(name = "height")
+    private Integer height; // Высота изображения в пикселях, если формат распознан
+
     @Column(name = "upload_date", nullable = false)
     private Timestamp uploadDate = new Timestamp(System.currentTimeMillis());
 
@@ -41,10 +52,10 @@ public class UserPhoto {
     @JoinColumn(name = "user_details_id")
     private UserDetails userDetails;
 
-    public UserPhoto(String fileName, String fileType, byte[] data, Long fileSize, UserDetails userDetails) {
+    public UserPhoto(String fileName, String fileType, String contentDigest, Long fileSize, UserDetails userDetails) {
         this.fileName = fileName;
         this.fileType = fileType;
-        this.data = data;
+        this.contentDigest = contentDigest;
         this.fileSize = fileSize;
         this.userDetails = userDetails;
     }
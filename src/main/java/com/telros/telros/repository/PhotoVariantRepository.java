@@ -0,0 +1,66 @@
+package com.telros.telros.repository;
+
+import com.telros.telros.model.PhotoVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с уменьшенными вариантами фотографий
+ */
+@Repository
+public interface PhotoVariantRepository extends JpaRepository<PhotoVariant, Long> {
+
+    /**
+     * Поиск варианта фотографии заданного размера
+     *
+     * @param sourceDigest SHA-256 хеш исходной фотографии
+     * @param size         максимальная сторона варианта
+     * @return Optional с вариантом или пустой Optional
+     */
+    Optional<PhotoVariant> findBySourceDigestAndSize(String sourceDigest, Integer size);
+
+    /**
+     * Поиск всех вариантов фотографии
+     *
+     * @param sourceDigest SHA-256 хеш исходной фотографии
+     * @return список вариантов
+     */
+    List<PhotoVariant> findBySourceDigest(String sourceDigest);
+
+    /**
+     * Проверка, ссылается ли какой-либо вариант на содержимое с указанным хешем
+     *
+     * @param contentDigest SHA-256 хеш содержимого
+     * @return true, если ссылка существует
+     */
+    boolean existsByContentDigest(String contentDigest);
+
+    /**
+     * Поиск хешей из списка, на которые ссылаются варианты
+     *
+     * @param digests SHA-256 хеши содержимого
+     * @return хеши, на которые есть ссылки
+     */
+    @Query("select distinct v.contentDigest from PhotoVariant v where v.contentDigest in :digests")
+    List<String> findReferencedDigests(@Param("digests") Collection<String> digests);
+
+    /**
+     * Удаление вариантов, построенных раньше указанного момента для содержимого, на которое уже не ссылается
+     * ни одна фотография. Такие варианты остаются, если построение закончилось после освобождения фотографии.
+     *
+     * @param before момент построения
+     * @return количество удаленных вариантов
+     */
+    @Modifying
+    @Query("delete from PhotoVariant v where v.createdAt < :before"
+            + " and not exists (select p.id from UserPhoto p where p.contentDigest = v.sourceDigest)")
+    int deleteOrphansCreatedBefore(@Param("before") Timestamp before);
+}
\ No newline at end of file
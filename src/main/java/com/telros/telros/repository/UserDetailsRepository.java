@@ -1,7 +1,9 @@
 package com.telros.telros.repository;
 
 import com.telros.telros.model.UserDetails;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -19,4 +21,14 @@ public interface UserDetailsRepository extends JpaRepository<UserDetails, Long>
      * @return Optional с детальной информацией или пустой Optional
      */
     Optional<UserDetails> findByUserId(Long userId);
-}
\ No newline at end of file
+
+    /**
+     * Поиск детальной информации с увеличением версии при фиксации транзакции.
+     * Используется, когда меняются связанные данные (фотография), чтобы изменился ETag.
+     *
+     * @param id идентификатор детальной информации
+     * @return Optional с детальной информацией или пустой Optional
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    Optional<UserDetails> findWithVersionIncrementById(Long id);
+}
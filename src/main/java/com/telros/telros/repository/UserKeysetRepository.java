@@ -0,0 +1,33 @@
+package com.telros.telros.repository;
+
+import com.telros.telros.repository.projection.UserRow;
+
+import java.util.List;
+
+/**
+ * Постраничное чтение пользователей по ключу (keyset pagination).
+ * Следующая страница начинается строго после последней записи предыдущей,
+ * поэтому стоимость запроса не зависит от номера страницы.
+ */
+public interface UserKeysetRepository {
+
+    /**
+     * Получить страницу пользователей после указанной позиции
+     *
+     * @param sortField  поле сортировки
+     * @param descending сортировка по убыванию
+     * @param lastValue  значение поля сортировки у последней записи предыдущей страницы или null для первой страницы
+     * @param lastId     ID последней записи предыдущей страницы или null для первой страницы
+     * @param limit      максимальное количество записей
+     * @return пользователи в порядке (поле сортировки, ID)
+     */
+    List<UserRow> findPage(UserSortField sortField, boolean descending, Object lastValue, Long lastId, int limit);
+
+    /**
+     * Оценка количества пользователей по статистике планировщика PostgreSQL.
+     * Для других СУБД и для таблиц без статистики возвращает пустое значение.
+     *
+     * @return оценка количества строк или null
+     */
+    Long estimateCount();
+}
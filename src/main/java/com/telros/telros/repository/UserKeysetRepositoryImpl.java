@@ -0,0 +1,78 @@
+package com.telros.telros.repository;
+
+import com.telros.telros.repository.projection.UserRow;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+
+import java.util.List;
+
+/**
+ * Реализация {@link UserKeysetRepository} на JPQL
+ */
+class UserKeysetRepositoryImpl implements UserKeysetRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public List<UserRow> findPage(UserSortField sortField, boolean descending, Object lastValue, Long lastId, int limit) {
+        String property = "u." + sortField.getProperty();
+        String direction = descending ? "desc" : "asc";
+        String after = descending ? "<" : ">";
+
+        StringBuilder jpql = new StringBuilder(UserRow.SELECT);
+        if (lastId != null) {
+            if (sortField == UserSortField.ID) {
+                jpql.append(" where u.id ").append(after).append(" :lastId");
+            } else {
+                jpql.append(" where ").append(property).append(' ').append(after).append(" :lastValue")
+                        .append(" or (").append(property).append(" = :lastValue and u.id ")
+                        .append(after).append(" :lastId)");
+            }
+        }
+        jpql.append(" order by ");
+        if (sortField != UserSortField.ID) {
+            jpql.append(property).append(' ').append(direction).append(", ");
+        }
+        jpql.append("u.id ").append(direction);
+
+        TypedQuery<UserRow> query = entityManager.createQuery(jpql.toString(), UserRow.class)
+                .setMaxResults(limit);
+        if (lastId != null) {
+            query.setParameter("lastId", lastId);
+            if (sortField != UserSortField.ID) {
+                query.setParameter("lastValue", lastValue);
+            }
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public Long estimateCount() {
+        if (!isPostgres()) {
+            return null;
+        }
+        Number estimate = (Number) entityManager
+                .createNativeQuery("select reltuples from pg_class where oid = to_regclass('users')")
+                .getResultList().stream().findFirst().orElse(null);
+        // reltuples = -1, пока таблица ни разу не анализировалась
+        if (estimate == null || estimate.longValue() < 0) {
+            return null;
+        }
+        return estimate.longValue();
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = entityManager.unwrap(Session.class).doReturningWork(connection ->
+                    "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName()));
+            postgres = result;
+        }
+        return result;
+    }
+}
@@ -1,9 +1,14 @@
 package com.telros.telros.repository;
 
 import com.telros.telros.model.UserPhoto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -19,4 +24,48 @@ public interface UserPhotoRepository extends JpaRepository<UserPhoto, Long> {
      * @return Optional с фотографией или пустой Optional
      */
     Optional<UserPhoto> findByUserDetails_Id(Long userDetailsId);
+
+    /**
+     * Проверка, ссылается ли какая-либо фотография на содержимое с указанным хешем
+     *
+     * @param contentDigest SHA-256 хеш содержимого
+     * @return true, если ссылка существует
+     */
+    boolean existsByContentDigest(String contentDigest);
+
+    /**
+     * Поиск типа содержимого по хешу среди фотографий, которые на него ссылаются
+     *
+     * @param contentDigest SHA-256 хеш содержимого
+     * @param pageable      ограничение количества результатов
+     * @return MIME-типы фотографий с этим содержимым
+     */
+    @Query("select p.fileType from UserPhoto p where p.contentDigest = :digest")
+    List<String> findFileTypesByContentDigest(@Param("digest") String contentDigest, Pageable pageable);
+
+    /**
+     * Поиск хешей из списка, на которые ссылаются фотографии
+     *
+     * @param digests SHA-256 хеши содержимого
+     * @return хеши, на которые есть ссылки
+     */
+    @Query("select distinct p.contentDigest from UserPhoto p where p.contentDigest in :digests")
+    List<String> findReferencedDigests(@Param("digests") Collection<String> digests);
+
+    /**
+     * Поиск хешей изображений, для которых построены не все варианты, по возрастанию хеша
+     *
+     * @param after    хеш, после которого начинается поиск
+     * @param sizes    размеры вариантов
+     * @param count    количество размеров
+     * @param pageable ограничение количества результатов
+     * @return хеши содержимого
+     */
+    @Query("select distinct p.contentDigest from UserPhoto p where p.contentDigest > :after and p.fileType like 'image/%'"
+            + " and (select count(v) from PhotoVariant v where v.sourceDigest = p.contentDigest and v.size in :sizes) < :count"
+            + " order by p.contentDigest")
+    List<String> findDigestsWithMissingVariants(@Param("after") String after,
+                                                @Param("sizes") Collection<Integer> sizes,
+                                                @Param("count") long count,
+                                                Pageable pageable);
 }
\ No newline at end of file
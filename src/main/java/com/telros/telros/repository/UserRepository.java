@@ -1,16 +1,25 @@
 package com.telros.telros.repository;
 
 import com.telros.telros.model.User;
+import com.telros.telros.repository.projection.UserRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с пользователями
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserKeysetRepository {
 
     /**
      * Поиск пользователя по имени пользователя
@@ -35,4 +44,98 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return true если пользователь существует, иначе false
      */
     Boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * Поиск пользователей, занимающих указанное имя пользователя или email, за один запрос
+     *
+     * @param username имя пользователя
+     * @param email    email пользователя
+     * @return имена найденных пользователей
+     */
+    @Query("select u.username from User u where u.username = :username or u.email = :email")
+    List<String> findConflictingUsernames(@Param("username") String username, @Param("email") String email);
+
+    /**
+     * Поиск занятых имен пользователей из списка
+     *
+     * @param usernames имена пользователей
+     * @return имена, которые уже заняты
+     */
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Поиск занятых email из списка
+     *
+     * @param emails email пользователей
+     * @return email, которые уже заняты
+     */
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * Получить всех пользователей в виде проекции, упорядоченных по ID
+     *
+     * @return проекции пользователей
+     */
+    @Query(UserRow.SELECT + " order by u.id")
+    List<UserRow> findAllRows();
+
+    /**
+     * Потоковое чтение всех пользователей в виде проекции, упорядоченных по ID.
+     * Строки читаются порциями через курсор на стороне СУБД, поэтому поток должен
+     * использоваться внутри транзакции и закрываться после чтения.
+     *
+     * @return поток проекций пользователей
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(UserRow.SELECT + " order by u.id")
+    Stream<UserRow> streamAllRows();
+
+    /**
+     * Получить проекцию пользователя по ID его детальной информации
+     *
+     * @param detailsId ID детальной информации
+     * @return Optional с проекцией или пустой Optional
+     */
+    @Query(UserRow.SELECT + " where d.id = :detailsId")
+    Optional<UserRow> findRowByDetailsId(@Param("detailsId") Long detailsId);
+
+    /**
+     * Получить проекции пользователей по ID их детальной информации
+     *
+     * @param detailsIds ID детальной информации
+     * @return найденные проекции в произвольном порядке
+     */
+    @Query(UserRow.SELECT + " where d.id in :detailsIds")
+    List<UserRow> findRowsByDetailsIds(@Param("detailsIds") Collection<Long> detailsIds);
+
+    /**
+     * Получить проекции пользователей по именам
+     *
+     * @param usernames имена пользователей
+     * @return найденные проекции в произвольном порядке
+     */
+    @Query(UserRow.SELECT + " where u.username in :usernames")
+    List<UserRow> findRowsByUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Получить проекции пользователей по ID детальной информации или именам одним запросом
+     *
+     * @param detailsIds ID детальной информации
+     * @param usernames  имена пользователей
+     * @return найденные проекции в произвольном порядке
+     */
+    @Query(UserRow.SELECT + " where d.id in :detailsIds or u.username in :usernames")
+    List<UserRow> findRowsByDetailsIdsOrUsernames(@Param("detailsIds") Collection<Long> detailsIds,
+                                                  @Param("usernames") Collection<String> usernames);
+
+    /**
+     * Получить проекцию пользователя по имени пользователя
+     *
+     * @param username имя пользователя
+     * @return Optional с проекцией или пустой Optional
+     */
+    @Query(UserRow.SELECT + " where u.username = :username")
+    Optional<UserRow> findRowByUsername(@Param("username") String username);
+}
@@ -0,0 +1,43 @@
+package com.telros.telros.repository;
+
+import com.telros.telros.exception.ValidationException;
+
+import java.util.Locale;
+
+/**
+ * Поля, по которым допускается сортировка при постраничном получении пользователей.
+ * Каждое поле уникально или дополняется ID, поэтому порядок всегда однозначен.
+ */
+public enum UserSortField {
+    ID("id"),
+    USERNAME("username"),
+    EMAIL("email");
+
+    private final String property;
+
+    UserSortField(String property) {
+        this.property = property;
+    }
+
+    /**
+     * @return имя свойства сущности User
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Получить поле сортировки по имени из запроса
+     *
+     * @param name имя поля (без учета регистра)
+     * @return поле сортировки
+     * @throws ValidationException если поле не поддерживается
+     */
+    public static UserSortField fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new ValidationException("Сортировка по полю '" + name + "' не поддерживается");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.telros.telros.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Плоская проекция пользователя и его детальной информации для операций чтения.
+ * Содержит только поля ответов API; хеш фотографии выбирается подзапросом,
+ * поэтому сущность фотографии не загружается.
+ */
+public record UserRow(
+        Long id,
+        String username,
+        String email,
+        Long detailsId,
+        String lastName,
+        String firstName,
+        String middleName,
+        LocalDate birthDate,
+        String phoneNumber,
+        String photoDigest,
+        Long version) {
+
+    /**
+     * Начало JPQL-запроса, выбирающего проекцию: псевдоним пользователя u, детальной информации d
+     */
+    public static final String SELECT = "select new com.telros.telros.repository.projection.UserRow("
+            + "u.id, u.username, u.email, d.id, d.lastName, d.firstName, d.middleName, d.birthDate, d.phoneNumber, "
+            + "(select p.contentDigest from UserPhoto p where p.userDetails = d), d.version) "
+            + "from User u left join u.userDetails d";
+
+    /**
+     * @return наличие фотографии
+     */
+    public Boolean hasPhoto() {
+        return photoDigest != null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,285 @@
+package com.telros.telros.search;
+
+import com.telros.telros.event.UserDetailsChangedEvent;
+import com.telros.telros.event.UserDetailsDeletedEvent;
+import com.telros.telros.repository.UserRepository;
+import com.telros.telros.repository.projection.UserRow;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Встроенный полнотекстовый индекс пользователей на Lucene.
+ * Индексирует фамилию, имя, отчество, телефон и email, хранится в памяти,
+ * строится целиком при создании бина, то есть до того, как веб-сервер начнет принимать запросы,
+ * и обновляется после фиксации изменений в БД.
+ */
+@Component
+@Slf4j
+public class UserSearchIndex implements DisposableBean {
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_LAST_NAME = "lastName";
+    private static final String FIELD_FIRST_NAME = "firstName";
+    private static final String FIELD_MIDDLE_NAME = "middleName";
+    private static final String FIELD_EMAIL = "email";
+    private static final String FIELD_EMAIL_EXACT = "emailExact";
+    private static final String FIELD_PHONE = "phone";
+
+    private static final int UPDATE_CHUNK_SIZE = 1000;
+    private static final Pattern PHONE_QUERY = Pattern.compile("[+\\d\\s()\\-]*\\d[+\\d\\s()\\-]*");
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory = new ByteBuffersDirectory();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    public UserSearchIndex(UserRepository userRepository, TransactionTemplate transactionTemplate) throws IOException {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Построить индекс по всем пользователям из базы данных.
+     * Записи заменяются по ID, поэтому изменение, обработанное параллельно через {@link #onChanged},
+     * не дает второго документа для того же пользователя.
+     */
+    @PostConstruct
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Long count = transactionTemplate.execute(status -> {
+            long indexed = 0;
+            try (Stream<UserRow> rows = userRepository.streamAllRows()) {
+                for (UserRow row : (Iterable<UserRow>) rows::iterator) {
+                    if (row.detailsId() != null) {
+                        writer.updateDocument(idTerm(row.detailsId()), toDocument(row));
+                        indexed++;
+                    }
+                }
+                writer.commit();
+                searcherManager.maybeRefresh();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось построить поисковый индекс", e);
+            }
+            return indexed;
+        });
+        log.info("Поисковый индекс пользователей построен: {} записей за {} мс", count, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Обновить записи индекса после фиксации изменений детальной информации
+     *
+     * @param event событие изменения
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChanged(UserDetailsChangedEvent event) {
+        List<Long> ids = new ArrayList<>(event.detailsIds());
+        try {
+            for (int from = 0; from < ids.size(); from += UPDATE_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + UPDATE_CHUNK_SIZE, ids.size()));
+                Set<Long> found = new HashSet<>();
+                for (UserRow row : userRepository.findRowsByDetailsIds(chunk)) {
+                    writer.updateDocument(idTerm(row.detailsId()), toDocument(row));
+                    found.add(row.detailsId());
+                }
+                // Запись могла быть удалена до того, как событие было обработано
+                for (Long id : chunk) {
+                    if (!found.contains(id)) {
+                        writer.deleteDocuments(idTerm(id));
+                    }
+                }
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("Не удалось обновить поисковый индекс для {}: {}", ids, e.getMessage());
+        }
+    }
+
+    /**
+     * Удалить запись из индекса после фиксации удаления детальной информации
+     *
+     * @param event событие удаления
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(UserDetailsDeletedEvent event) {
+        try {
+            writer.deleteDocuments(idTerm(event.detailsId()));
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("Не удалось удалить из поискового индекса запись {}: {}", event.detailsId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Найти пользователей по тексту запроса.
+     * Каждое слово запроса ищется по префиксу и с учетом опечаток, результат должен содержать все слова.
+     *
+     * @param text  текст запроса
+     * @param limit максимальное количество результатов
+     * @return ID детальной информации найденных пользователей в порядке релевантности
+     */
+    public List<Long> search(String text, int limit) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        if (text != null && PHONE_QUERY.matcher(text.trim()).matches()) {
+            // Номер телефона ищется целиком, независимо от форматирования
+            query.add(new PrefixQuery(new Term(FIELD_PHONE, digitsOnly(text))), BooleanClause.Occur.MUST);
+        } else {
+            List<String> terms = analyze(text);
+            if (terms.isEmpty()) {
+                return List.of();
+            }
+            for (String term : terms) {
+                query.add(termQuery(term), BooleanClause.Occur.MUST);
+            }
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(query.build(), limit);
+            List<Long> ids = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                ids.add(Long.valueOf(searcher.storedFields().document(scoreDoc.doc).get(FIELD_ID)));
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка поиска пользователей", e);
+        } finally {
+            if (searcher != null) {
+                release(searcher);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private Query termQuery(String term) {
+        BooleanQuery.Builder fields = new BooleanQuery.Builder();
+        for (String field : List.of(FIELD_LAST_NAME, FIELD_FIRST_NAME, FIELD_MIDDLE_NAME, FIELD_EMAIL)) {
+            float boost = FIELD_LAST_NAME.equals(field) ? 3f : FIELD_FIRST_NAME.equals(field) ? 2f : 1f;
+            fields.add(new BoostQuery(new TermQuery(new Term(field, term)), boost * 4), BooleanClause.Occur.SHOULD);
+            fields.add(new BoostQuery(new PrefixQuery(new Term(field, term)), boost * 2), BooleanClause.Occur.SHOULD);
+            int maxEdits = term.length() >= 6 ? 2 : term.length() >= 3 ? 1 : 0;
+            if (maxEdits > 0) {
+                fields.add(new BoostQuery(new FuzzyQuery(new Term(field, term), maxEdits, 1), boost),
+                        BooleanClause.Occur.SHOULD);
+            }
+        }
+        fields.add(new PrefixQuery(new Term(FIELD_EMAIL_EXACT, term)), BooleanClause.Occur.SHOULD);
+        return fields.build();
+    }
+
+    private Document toDocument(UserRow row) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, row.detailsId().toString(), Field.Store.YES));
+        addText(document, FIELD_LAST_NAME, row.lastName());
+        addText(document, FIELD_FIRST_NAME, row.firstName());
+        addText(document, FIELD_MIDDLE_NAME, row.middleName());
+        addText(document, FIELD_EMAIL, row.email());
+        if (row.email() != null) {
+            document.add(new StringField(FIELD_EMAIL_EXACT, row.email().toLowerCase(Locale.ROOT), Field.Store.NO));
+        }
+        if (row.phoneNumber() != null) {
+            String digits = digitsOnly(row.phoneNumber());
+            document.add(new StringField(FIELD_PHONE, digits, Field.Store.NO));
+            // Поиск по номеру без кода страны
+            if (digits.length() > 10) {
+                document.add(new StringField(FIELD_PHONE, digits.substring(digits.length() - 10), Field.Store.NO));
+            }
+        }
+        return document;
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(FIELD_LAST_NAME, text)) {
+            CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(attribute.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static String digitsOnly(String value) {
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    private static Term idTerm(Long detailsId) {
+        return new Term(FIELD_ID, detailsId.toString());
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.warn("Не удалось освободить IndexSearcher: {}", e.getMessage());
+        }
+    }
+}
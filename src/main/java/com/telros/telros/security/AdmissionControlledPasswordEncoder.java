@@ -0,0 +1,222 @@
+package com.telros.telros.security;
+
+import com.telros.telros.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Кодировщик паролей BCrypt, выполняющий хеширование в отдельном ограниченном пуле потоков.
+ * Потоки Tomcat не занимаются хешированием напрямую: при переполнении очереди запрос сразу
+ * отклоняется с {@link ServiceOverloadedException}. Задача, простоявшая в очереди дольше
+ * максимального ожидания, отклоняется тем же исключением до начала хеширования.
+ * Начатое хеширование не прерывается (BCrypt не реагирует на прерывание), поэтому вызывающий поток
+ * дожидается его результата, а время ожидания ограничено длиной очереди.
+ * Хеши с меньшей стоимостью считаются устаревшими и перехешируются при входе. Хеши с большей стоимостью
+ * не трогаются: иначе экземпляры или перезапуски, подобравшие разную стоимость, перехешировали бы
+ * пароли туда и обратно, а медленный старт незаметно понизил бы стоимость для всех пользователей.
+ */
+@Slf4j
+public class AdmissionControlledPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d{2})\\$");
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    private final PasswordEncoder delegate;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitNanos;
+    private final LongAdder rejected = new LongAdder();
+
+    public AdmissionControlledPasswordEncoder(int strength, int threads, int queueCapacity, Duration maxQueueWait) {
+        this(new BCryptPasswordEncoder(strength), strength, threads, queueCapacity, maxQueueWait);
+    }
+
+    AdmissionControlledPasswordEncoder(PasswordEncoder delegate, int strength, int threads, int queueCapacity,
+                                       Duration maxQueueWait) {
+        this.delegate = delegate;
+        this.strength = strength;
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Пул хеширования паролей: потоков {}, очередь {}, стоимость BCrypt {}", threads, queueCapacity, strength);
+    }
+
+    /**
+     * Создает кодировщик, подбирая стоимость BCrypt под целевую задержку
+     *
+     * @param targetLatency целевое время хеширования одного пароля
+     * @param minStrength   минимально допустимая стоимость
+     * @param threads       количество потоков хеширования
+     * @param queueCapacity максимальная длина очереди
+     * @param maxQueueWait  максимальное время ожидания в очереди до начала хеширования
+     * @return кодировщик
+     */
+    public static AdmissionControlledPasswordEncoder calibrated(Duration targetLatency, int minStrength,
+                                                                int threads, int queueCapacity, Duration maxQueueWait) {
+        int strength = BCryptStrengthCalibrator.calibrate(targetLatency, minStrength);
+        return new AdmissionControlledPasswordEncoder(strength, threads, queueCapacity, maxQueueWait);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Хеширует набор паролей параллельно на всех потоках пула.
+     * Задачи отправляются порциями по числу потоков, чтобы пакетная операция
+     * не заполняла очередь и не вытесняла одиночные запросы входа.
+     * Если порция принята не целиком, уже принятые задачи дорабатывают до конца
+     * и только после этого пакет отклоняется.
+     *
+     * @param rawPasswords пароли
+     * @return хеши в том же порядке
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        List<String> encoded = new ArrayList<>(rawPasswords.size());
+        int portion = executor.getCorePoolSize();
+        for (int from = 0; from < rawPasswords.size(); from += portion) {
+            List<? extends CharSequence> slice = rawPasswords.subList(from, Math.min(from + portion, rawPasswords.size()));
+            List<Future<String>> futures = new ArrayList<>(slice.size());
+            ServiceOverloadedException overloaded = null;
+            for (CharSequence rawPassword : slice) {
+                try {
+                    futures.add(submit(() -> delegate.encode(rawPassword)));
+                } catch (ServiceOverloadedException e) {
+                    overloaded = e;
+                    break;
+                }
+            }
+            for (Future<String> future : futures) {
+                encoded.add(await(future));
+            }
+            if (overloaded != null) {
+                throw overloaded;
+            }
+        }
+        return encoded;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) < strength;
+    }
+
+    /**
+     * @return текущая стоимость BCrypt
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * Регистрирует метрики пула хеширования
+     *
+     * @param registry реестр метрик
+     */
+    public void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("security.password.hashing.queue", executor, e -> e.getQueue().size())
+                .description("Количество задач хеширования в очереди")
+                .register(registry);
+        Gauge.builder("security.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Количество выполняемых задач хеширования")
+                .register(registry);
+        FunctionCounter.builder("security.password.hashing.rejected", rejected, LongAdder::sum)
+                .description("Количество отклоненных задач хеширования")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private <T> T execute(Callable<T> task) {
+        return await(submit(task));
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                long waitedNanos = System.nanoTime() - enqueuedAt;
+                if (waitedNanos > maxQueueWaitNanos) {
+                    rejected.increment();
+                    log.warn("Задача хеширования ждала в очереди {} мс, запрос отклонен",
+                            TimeUnit.NANOSECONDS.toMillis(waitedNanos));
+                    throw overloaded();
+                }
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Очередь хеширования паролей переполнена, запрос отклонен");
+            throw overloaded();
+        }
+    }
+
+    /**
+     * Дожидается результата принятой задачи. Задача не отменяется: время ожидания ограничено
+     * длиной очереди и максимальным ожиданием в ней, а прерванное ожидание не останавливает BCrypt.
+     */
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание хеширования пароля прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Ошибка при хешировании пароля", e.getCause());
+        }
+    }
+
+    private static ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException("Сервис перегружен, повторите попытку позже", RETRY_AFTER_SECONDS);
+    }
+
+    private static final class HashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.telros.telros.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Подбор стоимости BCrypt под текущее оборудование.
+ * Выбирается наибольшая стоимость, при которой медиана нескольких замеров хеширования укладывается
+ * в целевую задержку, но не ниже заданного минимума. Вблизи границы стоимости подбор все равно может
+ * дать разный результат на разных экземплярах, поэтому при нескольких экземплярах стоимость лучше
+ * задать явно через security.password.bcrypt.strength.
+ */
+@Slf4j
+final class BCryptStrengthCalibrator {
+
+    private static final int MAX_STRENGTH = 16;
+    private static final int SAMPLES = 5;
+
+    private BCryptStrengthCalibrator() {
+    }
+
+    /**
+     * Определяет стоимость BCrypt для целевой задержки
+     *
+     * @param targetLatency целевое время хеширования одного пароля
+     * @param minStrength   минимально допустимая стоимость
+     * @return выбранная стоимость
+     */
+    static int calibrate(Duration targetLatency, int minStrength) {
+        String sample = UUID.randomUUID().toString();
+        long targetNanos = targetLatency.toNanos();
+
+        // Прогрев, чтобы первый замер не включал JIT-компиляцию
+        new BCryptPasswordEncoder(4).encode(sample);
+
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= MAX_STRENGTH; strength++) {
+            long elapsed = measure(strength, sample);
+            log.debug("BCrypt стоимость {}: {} мс", strength, Duration.ofNanos(elapsed).toMillis());
+            if (elapsed > targetNanos) {
+                break;
+            }
+            chosen = strength;
+            // Каждый следующий шаг вдвое дороже, поэтому продолжать нет смысла
+            if (elapsed * 2 > targetNanos) {
+                break;
+            }
+        }
+
+        log.info("Выбрана стоимость BCrypt {} для целевой задержки {} мс", chosen, targetLatency.toMillis());
+        return chosen;
+    }
+
+    /**
+     * Медиана времени хеширования, чтобы одиночная пауза (сборка мусора, соседние процессы) не сдвигала выбор
+     */
+    private static long measure(int strength, String sample) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long[] elapsed = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(sample);
+            elapsed[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(elapsed);
+        return elapsed[SAMPLES / 2];
+    }
+}
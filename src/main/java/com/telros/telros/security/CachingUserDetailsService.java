@@ -0,0 +1,90 @@
+package com.telros.telros.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Кэширующая обертка над {@link UserDetailsServiceImpl}.
+ * Размер кэша ограничен, записи живут не дольше заданного TTL. Параллельные запросы
+ * одного и того же пользователя выполняют только одну загрузку из базы данных.
+ * Записи сбрасываются явно при регистрации пользователя и смене пароля или ролей.
+ * Сброс записи не отзывает выданные токены: в режиме jwt.auth-mode=CLAIMS роли берутся из токена
+ * и остаются прежними до истечения его срока действия.
+ */
+@Slf4j
+@Service
+@Primary
+public class CachingUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private final UserDetailsServiceImpl delegate;
+    private final Cache<String, UserDetails> cache;
+
+    public CachingUserDetailsService(UserDetailsServiceImpl delegate,
+                                     @Value("${security.user-cache.max-size:10000}") long maxSize,
+                                     @Value("${security.user-cache.ttl:5m}") Duration ttl,
+                                     MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "security.user-details");
+    }
+
+    /**
+     * Загружает пользователя по имени пользователя из кэша или из базы данных
+     *
+     * @param username имя пользователя
+     * @return UserDetails
+     * @throws UsernameNotFoundException если пользователь не найден
+     */
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return cache.get(username, delegate::loadUserByUsername);
+    }
+
+    /**
+     * Сохраняет новый хеш пароля и сбрасывает запись пользователя в кэше
+     *
+     * @param user        пользователь
+     * @param newPassword новый хеш пароля
+     * @return обновленный UserDetails
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserDetails updated = delegate.updatePassword(user, newPassword);
+        evict(user.getUsername());
+        return updated;
+    }
+
+    /**
+     * Удаляет пользователя из кэша
+     *
+     * @param username имя пользователя
+     */
+    public void evict(String username) {
+        log.debug("Сброс кэша данных пользователя: {}", username);
+        cache.invalidate(username);
+    }
+
+    /**
+     * Очищает кэш полностью
+     */
+    public void evictAll() {
+        log.debug("Полный сброс кэша данных пользователей");
+        cache.invalidateAll();
+    }
+}
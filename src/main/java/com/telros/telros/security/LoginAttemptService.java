@@ -0,0 +1,96 @@
+package com.telros.telros.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.telros.telros.exception.LoginBlockedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Сервис учета неудачных попыток входа.
+ * Попытки считаются отдельно по имени пользователя и по IP-адресу клиента в скользящем окне.
+ * Заблокированные попытки отклоняются до проверки пароля, поэтому перебор паролей
+ * не расходует процессорное время на BCrypt.
+ */
+@Slf4j
+@Service
+public class LoginAttemptService {
+
+    private static final int BUCKETS = 10;
+
+    private final int maxFailuresPerUser;
+    private final int maxFailuresPerIp;
+    private final long windowMillis;
+    private final Cache<String, SlidingWindowCounter> counters;
+
+    public LoginAttemptService(@Value("${security.login-attempts.max-per-user:5}") int maxFailuresPerUser,
+                               @Value("${security.login-attempts.max-per-ip:50}") int maxFailuresPerIp,
+                               @Value("${security.login-attempts.window:15m}") Duration window,
+                               @Value("${security.login-attempts.max-tracked:100000}") long maxTracked) {
+        this.maxFailuresPerUser = maxFailuresPerUser;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.windowMillis = window.toMillis();
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterAccess(window)
+                .build();
+    }
+
+    /**
+     * Проверяет, разрешена ли попытка входа
+     *
+     * @param username имя пользователя
+     * @param clientIp IP-адрес клиента
+     * @throws LoginBlockedException если превышен лимит неудачных попыток
+     */
+    public void checkAllowed(String username, String clientIp) {
+        long now = System.currentTimeMillis();
+        checkLimit(userKey(username), maxFailuresPerUser, now);
+        checkLimit(ipKey(clientIp), maxFailuresPerIp, now);
+    }
+
+    /**
+     * Учитывает неудачную попытку входа
+     *
+     * @param username имя пользователя
+     * @param clientIp IP-адрес клиента
+     */
+    public void recordFailure(String username, String clientIp) {
+        long now = System.currentTimeMillis();
+        counters.get(userKey(username), key -> newCounter()).increment(now);
+        counters.get(ipKey(clientIp), key -> newCounter()).increment(now);
+    }
+
+    /**
+     * Сбрасывает счетчик пользователя после успешного входа
+     *
+     * @param username имя пользователя
+     */
+    public void recordSuccess(String username) {
+        counters.invalidate(userKey(username));
+    }
+
+    private void checkLimit(String key, int limit, long now) {
+        SlidingWindowCounter counter = counters.getIfPresent(key);
+        if (counter != null && counter.sum(now) >= limit) {
+            log.warn("Попытка входа отклонена, превышен лимит неудачных попыток: {}", key);
+            throw new LoginBlockedException(Math.max(1, counter.getBucketMillis() / 1000));
+        }
+    }
+
+    private SlidingWindowCounter newCounter() {
+        return new SlidingWindowCounter(windowMillis, BUCKETS);
+    }
+
+    private static String userKey(String username) {
+        return "user:" + username.toLowerCase(Locale.ROOT);
+    }
+
+    private static String ipKey(String clientIp) {
+        return "ip:" + clientIp;
+    }
+}
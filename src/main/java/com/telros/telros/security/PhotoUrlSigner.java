@@ -0,0 +1,99 @@
+package com.telros.telros.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Подпись ссылок на фотографии HMAC-SHA256 с ограниченным сроком действия.
+ * Срок действия округляется до границы интервала, поэтому в течение интервала ссылка не меняется
+ * и ответ по ней может кешироваться прокси; выданная ссылка действует не меньше одного интервала.
+ * Секрет photo.signed-url.secret обязателен и не должен совпадать с jwt.secret, иначе приложение не запустится.
+ */
+@Component
+public class PhotoUrlSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PATH = "/api/photos/";
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+
+    public PhotoUrlSigner(@Value("${photo.signed-url.secret:}") String secret,
+                          @Value("${jwt.secret:}") String jwtSecret,
+                          @Value("${photo.signed-url.ttl:1h}") Duration ttl) {
+        // Отдельный секрет: утечка ссылки не должна упрощать подбор ключа подписи токенов, и наоборот
+        if (secret.isBlank()) {
+            throw new IllegalStateException("Не задан секрет подписи ссылок на фотографии photo.signed-url.secret");
+        }
+        if (secret.equals(jwtSecret)) {
+            throw new IllegalStateException("Секрет подписи ссылок на фотографии должен отличаться от jwt.secret");
+        }
+        if (secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("Секрет подписи ссылок на фотографии должен быть не короче "
+                    + MIN_SECRET_LENGTH + " байт");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.ttlSeconds = Math.max(1, ttl.toSeconds());
+    }
+
+    /**
+     * Подписать ссылку на содержимое фотографии
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @return относительная ссылка с временем истечения и подписью
+     */
+    public String sign(String digest) {
+        long expires = (currentEpoch() + 2) * ttlSeconds;
+        return PATH + digest + "?exp=" + expires + "&sig=" + signature(digest, expires);
+    }
+
+    /**
+     * Проверить подпись и срок действия ссылки
+     *
+     * @param digest    SHA-256 хеш содержимого
+     * @param expires   время истечения в секундах эпохи
+     * @param signature подпись из ссылки
+     * @return true, если подпись верна и срок не истек
+     */
+    public boolean verify(String digest, long expires, String signature) {
+        if (signature == null || expires < nowSeconds()) {
+            return false;
+        }
+        return MessageDigest.isEqual(signature(digest, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Номер текущего интервала. Ссылки, выданные в одном интервале, совпадают,
+     * поэтому номер входит в ETag ответов, содержащих ссылки.
+     *
+     * @return номер интервала
+     */
+    public long currentEpoch() {
+        return nowSeconds() / ttlSeconds;
+    }
+
+    private long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private String signature(String digest, long expires) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] hmac = mac.doFinal((digest + ":" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hmac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось подписать ссылку на фотографию", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.telros.telros.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счетчик событий в скользящем окне без блокировок.
+ * Окно разбито на корзины фиксированной длительности; устаревшая корзина обнуляется
+ * потоком, первым переключившим ее эпоху. При одновременном переключении возможна потеря
+ * единичного инкремента, что допустимо для подсчета неудачных попыток входа.
+ */
+final class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray counts;
+
+    SlidingWindowCounter(long windowMillis, int buckets) {
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        this.epochs = new AtomicLongArray(buckets);
+        this.counts = new AtomicLongArray(buckets);
+    }
+
+    /**
+     * Учитывает событие в текущей корзине
+     *
+     * @param nowMillis текущее время в миллисекундах
+     */
+    void increment(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int index = (int) (epoch % buckets);
+        long seen = epochs.get(index);
+        if (seen != epoch && epochs.compareAndSet(index, seen, epoch)) {
+            counts.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+    }
+
+    /**
+     * Возвращает количество событий в окне
+     *
+     * @param nowMillis текущее время в миллисекундах
+     * @return количество событий
+     */
+    long sum(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (epoch - epochs.get(i) < buckets) {
+                total += counts.get(i);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return длительность одной корзины в миллисекундах
+     */
+    long getBucketMillis() {
+        return bucketMillis;
+    }
+}
@@ -1,7 +1,9 @@
 package com.telros.telros.security;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.telros.telros.model.ERole;
 import com.telros.telros.model.User;
+import com.telros.telros.service.RoleRegistry;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
@@ -41,7 +43,7 @@ public class UserDetailsImpl implements UserDetails {
      */
     public static UserDetailsImpl build(User user) {
         List<GrantedAuthority> authorities = user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName().name()))
+                .map(role -> RoleRegistry.authorityOf(role.getName()))
                 .collect(Collectors.toList());
 
         return new UserDetailsImpl(
@@ -52,6 +54,33 @@ public class UserDetailsImpl implements UserDetails {
                 authorities);
     }
 
+    /**
+     * Создает UserDetailsImpl из данных, сохраненных в JWT токене.
+     * Пароль в таком principal отсутствует.
+     *
+     * @param id       ID пользователя
+     * @param username имя пользователя
+     * @param email    email пользователя
+     * @param roles    имена ролей
+     * @return UserDetailsImpl
+     */
+    public static UserDetailsImpl build(Long id, String username, String email, Collection<String> roles) {
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(UserDetailsImpl::authorityOf)
+                .collect(Collectors.toList());
+
+        return new UserDetailsImpl(id, username, email, null, authorities);
+    }
+
+    private static GrantedAuthority authorityOf(String name) {
+        for (ERole role : ERole.values()) {
+            if (role.name().equals(name)) {
+                return RoleRegistry.authorityOf(role);
+            }
+        }
+        return new SimpleGrantedAuthority(name);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
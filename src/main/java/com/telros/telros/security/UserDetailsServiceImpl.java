@@ -4,6 +4,7 @@ import com.telros.telros.model.User;
 import com.telros.telros.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -14,7 +15,7 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -33,4 +34,23 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return UserDetailsImpl.build(user);
     }
+
+    /**
+     * Сохраняет новый хеш пароля пользователя.
+     * Вызывается при входе, если сохраненный хеш создан с устаревшей стоимостью BCrypt.
+     *
+     * @param user        пользователь
+     * @param newPassword новый хеш пароля
+     * @return обновленный UserDetails
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = userRepository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден: " + user.getUsername()));
+        entity.setPassword(newPassword);
+        userRepository.save(entity);
+
+        return UserDetailsImpl.build(entity);
+    }
 }
\ No newline at end of file
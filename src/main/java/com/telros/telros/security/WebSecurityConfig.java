@@ -2,8 +2,14 @@ package com.telros.telros.security;
 
 import com.telros.telros.security.jwt.AuthEntryPointJwt;
 import com.telros.telros.security.jwt.AuthTokenFilter;
+import com.telros.telros.security.jwt.JwtAuthMode;
 import com.telros.telros.security.jwt.JwtUtils;
+import com.telros.telros.security.jwt.JwtVerifier;
+import com.telros.telros.security.jwt.VerifiedTokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,11 +20,12 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.time.Duration;
+
 /**
  * Конфигурация безопасности для приложения
  */
@@ -28,9 +35,14 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @RequiredArgsConstructor
 public class WebSecurityConfig {
 
-    private final UserDetailsServiceImpl userDetailsService;
+    private final CachingUserDetailsService userDetailsService;
     private final AuthEntryPointJwt unauthorizedHandler;
     private final JwtUtils jwtUtils;
+    private final JwtVerifier jwtVerifier;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    @Value("${jwt.auth-mode:CLAIMS}")
+    private JwtAuthMode jwtAuthMode;
 
     /**
      * Создает фильтр для аутентификации по JWT токену
@@ -39,20 +51,23 @@ public class WebSecurityConfig {
      */
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
-        return new AuthTokenFilter(jwtUtils, userDetailsService);
+        return new AuthTokenFilter(jwtVerifier, verifiedTokenCache, jwtUtils, userDetailsService, jwtAuthMode);
     }
 
     /**
-     * Создает провайдер аутентификации
+     * Создает провайдер аутентификации.
+     * Хеши паролей с устаревшей стоимостью BCrypt перехешируются при успешном входе.
      *
+     * @param passwordEncoder кодировщик паролей
      * @return провайдер аутентификации
      */
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
 
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setUserDetailsPasswordService(userDetailsService);
+        authProvider.setPasswordEncoder(passwordEncoder);
 
         return authProvider;
     }
@@ -70,36 +85,64 @@ public class WebSecurityConfig {
     }
 
     /**
-     * Создает кодировщик паролей
+     * Создает кодировщик паролей с отдельным ограниченным пулом потоков.
+     * Если стоимость BCrypt не задана явно, она подбирается при старте под целевую задержку.
+     * При нескольких экземплярах приложения стоимость следует задавать явно, чтобы она была у всех одинаковой.
      *
+     * @param strength      фиксированная стоимость BCrypt или -1 для автоматического подбора
+     * @param targetLatency целевое время хеширования одного пароля
+     * @param minStrength   минимальная стоимость при автоматическом подборе
+     * @param threads       количество потоков хеширования или 0 по числу процессоров
+     * @param queueCapacity максимальная длина очереди хеширования
+     * @param maxQueueWait  максимальное время ожидания в очереди хеширования
+     * @param meterRegistry реестр метрик
      * @return кодировщик паролей
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public AdmissionControlledPasswordEncoder passwordEncoder(
+            @Value("${security.password.bcrypt.strength:-1}") int strength,
+            @Value("${security.password.bcrypt.target-latency:250ms}") Duration targetLatency,
+            @Value("${security.password.bcrypt.min-strength:10}") int minStrength,
+            @Value("${security.password.hashing.threads:0}") int threads,
+            @Value("${security.password.hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${security.password.hashing.max-queue-wait:5s}") Duration maxQueueWait,
+            MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AdmissionControlledPasswordEncoder encoder = strength > 0
+                ? new AdmissionControlledPasswordEncoder(strength, poolSize, queueCapacity, maxQueueWait)
+                : AdmissionControlledPasswordEncoder.calibrated(targetLatency, minStrength, poolSize, queueCapacity, maxQueueWait);
+        encoder.registerMetrics(meterRegistry);
+        return encoder;
     }
 
     /**
      * Создает цепочку фильтров безопасности
      *
-     * @param http конфигурация HTTP безопасности
+     * @param http                   конфигурация HTTP безопасности
+     * @param authenticationProvider провайдер аутентификации
      * @return цепочка фильтров безопасности
      * @throws Exception если произошла ошибка
      */
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, DaoAuthenticationProvider authenticationProvider)
+            throws Exception {
         http.csrf(AbstractHttpConfigurer::disable)
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Асинхронная диспетчеризация продолжает уже авторизованный запрос (потоковые ответы)
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
+                        .requestMatchers("/api/photos/**").permitAll()
                         .requestMatchers("/v3/api-docs", "/v3/api-docs/**").permitAll()
                         .requestMatchers("/api-docs", "/api-docs/**").permitAll()
                         .requestMatchers("/swagger-ui/**").permitAll()
                         .requestMatchers("/swagger-ui.html").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated());
 
-        http.authenticationProvider(authenticationProvider());
+        http.authenticationProvider(authenticationProvider);
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -1,6 +1,6 @@
 package com.telros.telros.security.jwt;
 
-import com.telros.telros.security.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -21,13 +22,21 @@ import java.io.IOException;
  */
 public class AuthTokenFilter extends OncePerRequestFilter {
 
+    private final JwtVerifier jwtVerifier;
+    private final VerifiedTokenCache tokenCache;
     private final JwtUtils jwtUtils;
-    private final UserDetailsServiceImpl userDetailsService;
+    private final UserDetailsService userDetailsService;
+    private final JwtAuthMode authMode;
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
+    private static final String PHOTOS_PATH = "/api/photos/";
     
-    public AuthTokenFilter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService) {
+    public AuthTokenFilter(JwtVerifier jwtVerifier, VerifiedTokenCache tokenCache, JwtUtils jwtUtils,
+                           UserDetailsService userDetailsService, JwtAuthMode authMode) {
+        this.jwtVerifier = jwtVerifier;
+        this.tokenCache = tokenCache;
         this.jwtUtils = jwtUtils;
         this.userDetailsService = userDetailsService;
+        this.authMode = authMode;
     }
 
     /**
@@ -44,10 +53,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            VerifiedToken verifiedToken = jwt != null ? verifyToken(jwt) : null;
+            if (verifiedToken != null) {
+                UserDetails userDetails = resolvePrincipal(verifiedToken);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -61,6 +69,58 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Фотографии по подписанным ссылкам отдаются без аутентификации, токен для них не проверяется
+     *
+     * @param request HTTP запрос
+     * @return true, если фильтр не применяется
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + PHOTOS_PATH);
+    }
+
+    /**
+     * Проверяет токен, используя кэш ранее проверенных токенов
+     *
+     * @param jwt JWT токен
+     * @return проверенный токен или null, если токен невалиден
+     */
+    private VerifiedToken verifyToken(String jwt) {
+        VerifiedToken cached = tokenCache.get(jwt);
+        if (cached != null) {
+            return cached;
+        }
+
+        JwtVerificationResult verification = jwtVerifier.verify(jwt);
+        if (!verification.isValid()) {
+            return null;
+        }
+
+        Claims claims = verification.claims();
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : 0;
+        VerifiedToken verified = new VerifiedToken(claims.getSubject(),
+                jwtUtils.getPrincipalFromClaims(claims), expiresAt);
+        tokenCache.put(jwt, verified);
+        return verified;
+    }
+
+    /**
+     * Определяет principal для проверенного токена.
+     * В режиме CLAIMS principal строится из claims токена, для токенов без
+     * пользовательских claims выполняется загрузка из базы данных.
+     *
+     * @param verifiedToken проверенный токен
+     * @return principal
+     */
+    private UserDetails resolvePrincipal(VerifiedToken verifiedToken) {
+        if (authMode == JwtAuthMode.CLAIMS && verifiedToken.principal() != null) {
+            return verifiedToken.principal();
+        }
+
+        return userDetailsService.loadUserByUsername(verifiedToken.username());
+    }
+
     /**
      * Извлекает JWT токен из заголовка Authorization
      *
@@ -76,4 +136,4 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
         return null;
     }
-}
\ No newline at end of file
+}
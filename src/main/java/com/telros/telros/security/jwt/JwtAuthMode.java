@@ -0,0 +1,18 @@
+package com.telros.telros.security.jwt;
+
+/**
+ * Источник данных для principal при аутентификации по JWT токену
+ */
+public enum JwtAuthMode {
+
+    /**
+     * Пользователь загружается из базы данных при каждом запросе
+     */
+    DATABASE,
+
+    /**
+     * Пользователь восстанавливается из подписанных claims токена без обращения к базе данных.
+     * Изменения ролей вступают в силу после выпуска нового токена.
+     */
+    CLAIMS
+}
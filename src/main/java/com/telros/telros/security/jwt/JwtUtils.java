@@ -1,17 +1,17 @@
 package com.telros.telros.security.jwt;
 
 import com.telros.telros.security.UserDetailsImpl;
-import io.jsonwebtoken.*;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Утилитарный класс для работы с JWT токенами
@@ -19,49 +19,87 @@ import java.util.Date;
 @Component
 public class JwtUtils {
 
-    private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_EMAIL = "email";
+    public static final String CLAIM_ROLES = "roles";
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    private final JwtVerifier jwtVerifier;
 
     @Value("${jwt.expiration}")
     private int jwtExpirationMs;
 
+    public JwtUtils(JwtVerifier jwtVerifier) {
+        this.jwtVerifier = jwtVerifier;
+    }
+
     /**
-     * Генерирует JWT токен на основе данных аутентификации
+     * Генерирует JWT токен на основе данных аутентификации.
+     * Помимо имени пользователя в токен записываются ID, email и роли,
+     * чтобы principal можно было восстановить без обращения к базе данных.
      *
      * @param authentication данные аутентификации
      * @return JWT токен
      */
     public String generateJwtToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        List<String> roles = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
 
         return Jwts.builder()
                 .setSubject(userPrincipal.getUsername())
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .claim(CLAIM_EMAIL, userPrincipal.getEmail())
+                .claim(CLAIM_ROLES, roles)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(jwtVerifier.getSigningKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
     /**
-     * Получает ключ для подписи JWT токена
+     * Извлекает имя пользователя из JWT токена
      *
-     * @return ключ
+     * @param token JWT токен
+     * @return имя пользователя
      */
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    public String getUserNameFromJwtToken(String token) {
+        return getClaimsFromJwtToken(token).getSubject();
     }
 
     /**
-     * Извлекает имя пользователя из JWT токена
+     * Извлекает claims из JWT токена
      *
      * @param token JWT токен
-     * @return имя пользователя
+     * @return claims токена
+     * @throws IllegalArgumentException если токен не прошел проверку
      */
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject();
+    public Claims getClaimsFromJwtToken(String token) {
+        JwtVerificationResult result = jwtVerifier.verify(token);
+        if (!result.isValid()) {
+            throw new IllegalArgumentException("JWT токен не прошел проверку: " + result.status());
+        }
+        return result.claims();
+    }
+
+    /**
+     * Восстанавливает principal из claims проверенного токена
+     *
+     * @param claims claims токена
+     * @return principal или null, если токен выпущен без пользовательских claims
+     */
+    public UserDetailsImpl getPrincipalFromClaims(Claims claims) {
+        Number id = claims.get(CLAIM_USER_ID, Number.class);
+        Collection<?> roles = claims.get(CLAIM_ROLES, Collection.class);
+        if (id == null || roles == null) {
+            return null;
+        }
+
+        return UserDetailsImpl.build(
+                id.longValue(),
+                claims.getSubject(),
+                claims.get(CLAIM_EMAIL, String.class),
+                roles.stream().map(String::valueOf).toList());
     }
 
     /**
@@ -71,19 +109,6 @@ public class JwtUtils {
      * @return true если токен валиден, иначе false
      */
     public boolean validateJwtToken(String authToken) {
-        try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parseClaimsJws(authToken);
-            return true;
-        } catch (MalformedJwtException e) {
-            logger.error("Некорректный JWT токен: {}", e.getMessage());
-        } catch (ExpiredJwtException e) {
-            logger.error("JWT токен истек: {}", e.getMessage());
-        } catch (UnsupportedJwtException e) {
-            logger.error("JWT токен не поддерживается: {}", e.getMessage());
-        } catch (IllegalArgumentException e) {
-            logger.error("JWT claims строка пуста: {}", e.getMessage());
-        }
-
-        return false;
+        return jwtVerifier.verify(authToken).isValid();
     }
-}
\ No newline at end of file
+}
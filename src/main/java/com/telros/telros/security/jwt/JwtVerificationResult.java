@@ -0,0 +1,40 @@
+package com.telros.telros.security.jwt;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Результат проверки JWT токена
+ *
+ * @param status результат проверки
+ * @param claims claims токена, если токен валиден, иначе null
+ */
+public record JwtVerificationResult(Status status, Claims claims) {
+
+    /**
+     * Возможные результаты проверки токена
+     */
+    public enum Status {
+        VALID,
+        EXPIRED,
+        INVALID_SIGNATURE,
+        MALFORMED,
+        UNSUPPORTED,
+        EMPTY,
+        INVALID
+    }
+
+    static JwtVerificationResult valid(Claims claims) {
+        return new JwtVerificationResult(Status.VALID, claims);
+    }
+
+    static JwtVerificationResult failure(Status status) {
+        return new JwtVerificationResult(status, null);
+    }
+
+    /**
+     * @return true если токен прошел проверку
+     */
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+}
@@ -0,0 +1,98 @@
+package com.telros.telros.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.Key;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Компонент проверки JWT токенов.
+ * Ключ подписи и парсер создаются один раз при старте, токен разбирается за один проход.
+ * Причины отказа возвращаются вызывающему коду и учитываются в счетчиках,
+ * а не логируются на уровне ERROR для каждого запроса.
+ */
+@Component
+public class JwtVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtVerifier.class);
+
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final Map<JwtVerificationResult.Status, LongAdder> outcomes =
+            new EnumMap<>(JwtVerificationResult.Status.class);
+
+    public JwtVerifier(@Value("${jwt.secret}") String jwtSecret) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        for (JwtVerificationResult.Status status : JwtVerificationResult.Status.values()) {
+            outcomes.put(status, new LongAdder());
+        }
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена и возвращает его claims
+     *
+     * @param token JWT токен
+     * @return результат проверки
+     */
+    public JwtVerificationResult verify(String token) {
+        JwtVerificationResult result;
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            result = JwtVerificationResult.valid(claims);
+        } catch (ExpiredJwtException e) {
+            result = reject(JwtVerificationResult.Status.EXPIRED, e);
+        } catch (io.jsonwebtoken.security.SecurityException e) {
+            result = reject(JwtVerificationResult.Status.INVALID_SIGNATURE, e);
+        } catch (MalformedJwtException e) {
+            result = reject(JwtVerificationResult.Status.MALFORMED, e);
+        } catch (UnsupportedJwtException e) {
+            result = reject(JwtVerificationResult.Status.UNSUPPORTED, e);
+        } catch (JwtException e) {
+            result = reject(JwtVerificationResult.Status.INVALID, e);
+        } catch (IllegalArgumentException e) {
+            result = reject(JwtVerificationResult.Status.EMPTY, e);
+        }
+
+        outcomes.get(result.status()).increment();
+        return result;
+    }
+
+    /**
+     * Возвращает количество проверок с указанным результатом с момента запуска
+     *
+     * @param status результат проверки
+     * @return количество проверок
+     */
+    public long getOutcomeCount(JwtVerificationResult.Status status) {
+        return outcomes.get(status).sum();
+    }
+
+    /**
+     * Получает ключ для подписи JWT токенов
+     *
+     * @return ключ
+     */
+    Key getSigningKey() {
+        return signingKey;
+    }
+
+    private JwtVerificationResult reject(JwtVerificationResult.Status status, Exception e) {
+        logger.debug("JWT токен отклонен ({}): {}", status, e.getMessage());
+        return JwtVerificationResult.failure(status);
+    }
+}
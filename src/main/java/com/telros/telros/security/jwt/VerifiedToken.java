@@ -0,0 +1,13 @@
+package com.telros.telros.security.jwt;
+
+import com.telros.telros.security.UserDetailsImpl;
+
+/**
+ * Проверенный JWT токен
+ *
+ * @param username        имя пользователя из subject токена
+ * @param principal       principal, восстановленный из claims, или null для токенов без пользовательских claims
+ * @param expiresAtMillis момент истечения токена в миллисекундах
+ */
+public record VerifiedToken(String username, UserDetailsImpl principal, long expiresAtMillis) {
+}
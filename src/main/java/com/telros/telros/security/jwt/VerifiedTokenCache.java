@@ -0,0 +1,113 @@
+package com.telros.telros.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный кэш проверенных JWT токенов.
+ * Ключом служит SHA-256 от токена, запись удаляется в момент истечения самого токена.
+ * Статистика попаданий публикуется в метриках jwt.verified-tokens.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
+    });
+
+    private final boolean enabled;
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.cache.max-size:10000}") long maxSize,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    /**
+     * Возвращает ранее проверенный токен
+     *
+     * @param token JWT токен
+     * @return проверенный токен или null, если токена нет в кэше
+     */
+    public VerifiedToken get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        return cache.getIfPresent(digest(token));
+    }
+
+    /**
+     * Сохраняет проверенный токен до момента его истечения
+     *
+     * @param token    JWT токен
+     * @param verified результат проверки
+     */
+    public void put(String token, VerifiedToken verified) {
+        if (enabled && verified.expiresAtMillis() > System.currentTimeMillis()) {
+            cache.put(digest(token), verified);
+        }
+    }
+
+    /**
+     * Очищает кэш полностью
+     */
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return приблизительное количество токенов в кэше
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return HexFormat.of().formatHex(hash);
+    }
+
+    /**
+     * Время жизни записи совпадает с оставшимся сроком действия токена
+     */
+    private static final class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            long remainingMs = value.expiresAtMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.telros.telros.service;
+
+import com.telros.telros.dto.request.SignupRequest;
+import com.telros.telros.dto.response.BatchRegistrationResponse;
+import com.telros.telros.dto.response.BatchRegistrationResult;
+import com.telros.telros.dto.response.BatchRegistrationResult.Status;
+import com.telros.telros.event.UserDetailsChangedEvent;
+import com.telros.telros.exception.ValidationException;
+import com.telros.telros.model.User;
+import com.telros.telros.model.UserDetails;
+import com.telros.telros.repository.UserRepository;
+import com.telros.telros.security.AdmissionControlledPasswordEncoder;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис пакетной регистрации пользователей.
+ * Пользователи сохраняются порциями, каждая порция - в отдельной транзакции;
+ * пароли порции хешируются параллельно непосредственно перед ее сохранением. Ошибка в одной записи не отменяет весь пакет.
+ */
+@Service
+@Slf4j
+public class BatchRegistrationService {
+
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private final UserRepository userRepository;
+    private final RoleRegistry roleRegistry;
+    private final AdmissionControlledPasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxBatchSize;
+    private final int chunkSize;
+
+    public BatchRegistrationService(UserRepository userRepository,
+                                    RoleRegistry roleRegistry,
+                                    AdmissionControlledPasswordEncoder passwordEncoder,
+                                    Validator validator,
+                                    TransactionTemplate transactionTemplate,
+                                    EntityManager entityManager,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${registration.batch.max-size:5000}") int maxBatchSize,
+                                    @Value("${registration.batch.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.roleRegistry = roleRegistry;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.maxBatchSize = maxBatchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Зарегистрировать пакет пользователей
+     *
+     * @param requests данные для регистрации
+     * @return результаты по каждой записи
+     * @throws ValidationException если пакет пуст или превышает допустимый размер
+     */
+    public BatchRegistrationResponse registerAll(List<SignupRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new ValidationException("Пакет регистрации пуст");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new ValidationException("Размер пакета превышает " + maxBatchSize + " записей");
+        }
+        log.info("Пакетная регистрация пользователей: {} записей", requests.size());
+
+        BatchRegistrationResult[] results = new BatchRegistrationResult[requests.size()];
+        List<Long> createdDetailsIds = new ArrayList<>();
+        List<Integer> accepted = validate(requests, results);
+        accepted = rejectDuplicates(requests, accepted, results);
+
+        for (int from = 0; from < accepted.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, accepted.size());
+            try {
+                persistChunk(requests, accepted.subList(from, to), results, createdDetailsIds);
+            } catch (RuntimeException e) {
+                // Уже сохраненные порции остаются, оставшиеся записи помечаются как неудавшиеся
+                log.error("Пакетная регистрация прервана на записи {}: {}", accepted.get(from), e.getMessage());
+                markFailed(requests, accepted.subList(from, accepted.size()), results, e);
+                break;
+            }
+        }
+        if (!createdDetailsIds.isEmpty()) {
+            eventPublisher.publishEvent(new UserDetailsChangedEvent(createdDetailsIds));
+        }
+
+        List<BatchRegistrationResult> resultList = List.of(results);
+        int created = (int) resultList.stream().filter(r -> r.getStatus() == Status.CREATED).count();
+        log.info("Пакетная регистрация завершена: создано {}, отклонено {}", created, results.length - created);
+        return new BatchRegistrationResponse(created, results.length - created, resultList);
+    }
+
+    private List<Integer> validate(List<SignupRequest> requests, BatchRegistrationResult[] results) {
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            SignupRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = new BatchRegistrationResult(i, null, Status.INVALID, null, "Пустая запись");
+                continue;
+            }
+            Set<ConstraintViolation<SignupRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                String message = violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+                results[i] = new BatchRegistrationResult(i, request.getUsername(), Status.INVALID, null, message);
+                continue;
+            }
+            accepted.add(i);
+        }
+        return accepted;
+    }
+
+    private List<Integer> rejectDuplicates(List<SignupRequest> requests, List<Integer> candidates,
+                                           BatchRegistrationResult[] results) {
+        Set<String> existingUsernames = new HashSet<>();
+        Set<String> existingEmails = new HashSet<>();
+        for (int from = 0; from < candidates.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Integer> slice = candidates.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, candidates.size()));
+            existingUsernames.addAll(userRepository.findExistingUsernames(
+                    slice.stream().map(i -> requests.get(i).getUsername()).toList()));
+            existingEmails.addAll(userRepository.findExistingEmails(
+                    slice.stream().map(i -> requests.get(i).getEmail()).toList()));
+        }
+
+        Set<String> seenUsernames = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+        List<Integer> accepted = new ArrayList<>();
+        for (Integer index : candidates) {
+            SignupRequest request = requests.get(index);
+            String message = null;
+            if (existingUsernames.contains(request.getUsername()) || !seenUsernames.add(request.getUsername())) {
+                message = "Имя пользователя уже занято";
+            } else if (existingEmails.contains(request.getEmail()) || !seenEmails.add(request.getEmail())) {
+                message = "Email уже используется";
+            }
+
+            if (message != null) {
+                results[index] = new BatchRegistrationResult(index, request.getUsername(), Status.DUPLICATE, null, message);
+            } else {
+                accepted.add(index);
+            }
+        }
+        return accepted;
+    }
+
+    private void persistChunk(List<SignupRequest> requests, List<Integer> indexes,
+                              BatchRegistrationResult[] results, List<Long> createdDetailsIds) {
+        // Хешируем только текущую порцию: пул хеширования не занят всем пакетом, а вставка начинается сразу
+        List<String> hashes = passwordEncoder.encodeAll(indexes.stream()
+                .map(index -> requests.get(index).getPassword())
+                .toList());
+        try {
+            List<User> users = transactionTemplate.execute(status -> {
+                List<User> saved = new ArrayList<>(indexes.size());
+                for (int i = 0; i < indexes.size(); i++) {
+                    saved.add(userRepository.save(newUser(requests.get(indexes.get(i)), hashes.get(i))));
+                }
+                userRepository.flush();
+                entityManager.clear();
+                return saved;
+            });
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                results[index] = new BatchRegistrationResult(index, requests.get(index).getUsername(),
+                        Status.CREATED, users.get(i).getId(), null);
+                createdDetailsIds.add(users.get(i).getUserDetails().getId());
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Параллельная регистрация заняла часть имен: сохраняем порцию построчно
+            log.warn("Порция из {} записей отклонена ограничением уникальности, повтор по одной записи", indexes.size());
+            for (int i = 0; i < indexes.size(); i++) {
+                persistOne(requests, indexes.get(i), hashes.get(i), results, createdDetailsIds);
+            }
+        }
+    }
+
+    private void markFailed(List<SignupRequest> requests, List<Integer> indexes, BatchRegistrationResult[] results,
+                            RuntimeException cause) {
+        for (Integer index : indexes) {
+            if (results[index] == null) {
+                results[index] = new BatchRegistrationResult(index, requests.get(index).getUsername(), Status.FAILED,
+                        null, cause.getMessage());
+            }
+        }
+    }
+
+    private void persistOne(List<SignupRequest> requests, int index, String hash, BatchRegistrationResult[] results,
+                            List<Long> createdDetailsIds) {
+        SignupRequest request = requests.get(index);
+        try {
+            User user = transactionTemplate.execute(status -> userRepository.saveAndFlush(newUser(request, hash)));
+            results[index] = new BatchRegistrationResult(index, request.getUsername(), Status.CREATED, user.getId(), null);
+            createdDetailsIds.add(user.getUserDetails().getId());
+        } catch (DataIntegrityViolationException e) {
+            results[index] = new BatchRegistrationResult(index, request.getUsername(), Status.DUPLICATE, null,
+                    "Имя пользователя или email уже заняты");
+        } catch (RuntimeException e) {
+            log.error("Не удалось зарегистрировать пользователя {}: {}", request.getUsername(), e.getMessage());
+            results[index] = new BatchRegistrationResult(index, request.getUsername(), Status.FAILED, null,
+                    e.getMessage());
+        }
+    }
+
+    private User newUser(SignupRequest request, String passwordHash) {
+        User user = new User(request.getUsername(), passwordHash, request.getEmail());
+        user.setRoles(roleRegistry.resolve(request.getRole()));
+
+        UserDetails userDetails = new UserDetails();
+        userDetails.setUser(user);
+        userDetails.setFirstName(request.getFirstName());
+        userDetails.setLastName(request.getLastName());
+        user.setUserDetails(userDetails);
+        return user;
+    }
+}
@@ -0,0 +1,77 @@
+package com.telros.telros.service;
+
+import java.util.regex.Pattern;
+
+/**
+ * Формирование и сравнение ETag ресурсов пользователей
+ */
+public final class ETags {
+
+    private static final Pattern EPOCH_SUFFIX = Pattern.compile("-e\\d+\"$");
+
+    private ETags() {
+    }
+
+    /**
+     * Сильный ETag детальной информации пользователя
+     *
+     * @param detailsId ID детальной информации
+     * @param version   версия записи
+     * @return ETag в кавычках
+     */
+    public static String userDetails(Long detailsId, Long version) {
+        return "\"ud-" + detailsId + "-v" + (version == null ? 0 : version) + "\"";
+    }
+
+    /**
+     * Сильный ETag ответа с детальной информацией пользователя, содержащего подписанную ссылку на фотографию.
+     * Ссылка меняется при смене интервала подписи, поэтому интервал входит в ETag;
+     * при проверке If-Match интервал не учитывается.
+     *
+     * @param detailsId ID детальной информации
+     * @param version   версия записи
+     * @param epoch     номер интервала подписи ссылок
+     * @return ETag в кавычках
+     */
+    public static String userDetails(Long detailsId, Long version, long epoch) {
+        return "\"ud-" + detailsId + "-v" + (version == null ? 0 : version) + "-e" + epoch + "\"";
+    }
+
+    /**
+     * Сильный ETag содержимого фотографии. Содержимое адресуется хешем, поэтому ETag не зависит от записи,
+     * через которую оно получено.
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @return ETag в кавычках
+     */
+    public static String photo(String digest) {
+        return "\"ph-" + digest + "\"";
+    }
+
+    /**
+     * Проверить условие If-Match (сильное сравнение, RFC 9110)
+     *
+     * @param ifMatch значение заголовка If-Match или null
+     * @param current текущий ETag ресурса или null, если ресурс не существует
+     * @return true если условие выполнено или заголовок не передан
+     */
+    public static boolean matches(String ifMatch, String current) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return true;
+        }
+        if (current == null) {
+            return false;
+        }
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || withoutEpoch(tag).equals(withoutEpoch(current))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String withoutEpoch(String tag) {
+        return EPOCH_SUFFIX.matcher(tag).replaceFirst("\"");
+    }
+}
@@ -0,0 +1,390 @@
+package com.telros.telros.service;
+
+import com.telros.telros.dto.response.PhotoUploadSessionResponse;
+import com.telros.telros.exception.ValidationException;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Сервис загрузки фотографий по частям.
+ * Клиент начинает загрузку, передает диапазоны байт в любом порядке, при обрыве связи запрашивает
+ * уже полученные диапазоны и досылает недостающие, а затем завершает загрузку.
+ * Части пишутся на свои места в файл в каталоге photo.upload.staging-dir, который после завершения
+ * передается в {@link UserPhotoService} без повторного копирования.
+ * Незавершенные загрузки удаляются через photo.upload.session-ttl после последней полученной части.
+ * Состояние загрузок хранится в памяти экземпляра приложения: после перезапуска загрузку нужно начать заново,
+ * а при нескольких экземплярах все запросы одной загрузки должны попадать на тот экземпляр, где она начата.
+ */
+@Service
+@Slf4j
+public class PhotoUploadSessionService {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+    private static final String PART_SUFFIX = ".part";
+    private static final int CHUNK_BUFFER_SIZE = 64 * 1024;
+
+    private final UserPhotoService userPhotoService;
+    private final Path stagingDir;
+    private final long maxUploadSize;
+    private final Duration sessionTtl;
+    private final int maxSessionsPerUser;
+    private final Clock clock = Clock.systemUTC();
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    // Количество незавершенных загрузок пользователя, меняется атомарно вместе с проверкой лимита
+    private final Map<Long, Integer> activeByUser = new ConcurrentHashMap<>();
+
+    public PhotoUploadSessionService(UserPhotoService userPhotoService,
+                                     @Value("${photo.upload.staging-dir:${photo.storage.filesystem.root}/uploads}") Path stagingDir,
+                                     @Value("${photo.upload.max-size:10MB}") DataSize maxUploadSize,
+                                     @Value("${photo.upload.session-ttl:1h}") Duration sessionTtl,
+                                     @Value("${photo.upload.max-sessions-per-user:3}") int maxSessionsPerUser) {
+        this.userPhotoService = userPhotoService;
+        this.stagingDir = stagingDir.toAbsolutePath().normalize();
+        this.maxUploadSize = maxUploadSize.toBytes();
+        this.sessionTtl = sessionTtl;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        try {
+            Files.createDirectories(this.stagingDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог загрузок " + this.stagingDir, e);
+        }
+        log.info("Каталог загрузок фотографий по частям: {}", this.stagingDir);
+    }
+
+    /**
+     * Начать загрузку фотографии по частям
+     *
+     * @param userDetailsId ID пользователя
+     * @param fileName      имя файла
+     * @param size          полный размер файла в байтах
+     * @return состояние загрузки
+     * @throws ValidationException если файл слишком большой или у пользователя слишком много незавершенных загрузок
+     * @throws IOException         при ошибке создания файла
+     */
+    public PhotoUploadSessionResponse start(Long userDetailsId, String fileName, long size) throws IOException {
+        if (size > maxUploadSize) {
+            throw new ValidationException("Размер файла превышает допустимые " + maxUploadSize + " байт");
+        }
+        if (!reserveSlot(userDetailsId)) {
+            throw new ValidationException("Слишком много незавершенных загрузок, завершите или отмените одну из них");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path file = stagingDir.resolve(id + PART_SUFFIX);
+        try {
+            // Части пишутся на свои позиции, файл дорастает до полного размера по мере их получения
+            Files.createFile(file);
+        } catch (IOException e) {
+            releaseSlot(userDetailsId);
+            throw e;
+        }
+        UploadSession session = new UploadSession(id, userDetailsId, fileName, size, file, clock.instant().plus(sessionTtl));
+        sessions.put(id, session);
+        log.info("Начата загрузка {} фотографии {} размером {} байт для пользователя с ID {}", id, fileName, size, userDetailsId);
+        return toResponse(session);
+    }
+
+    /**
+     * Получить состояние загрузки, чтобы дослать недостающие части
+     *
+     * @param userDetailsId ID пользователя
+     * @param id            идентификатор загрузки
+     * @return состояние загрузки
+     * @throws EntityNotFoundException если загрузка не найдена или истекла
+     */
+    public PhotoUploadSessionResponse status(Long userDetailsId, String id) {
+        return toResponse(find(userDetailsId, id));
+    }
+
+    /**
+     * Записать часть файла
+     *
+     * @param userDetailsId ID пользователя
+     * @param id            идентификатор загрузки
+     * @param contentRange  заголовок Content-Range вида {@code bytes start-end/size}
+     * @param content       содержимое части
+     * @return состояние загрузки
+     * @throws EntityNotFoundException если загрузка не найдена или истекла
+     * @throws ValidationException     если диапазон некорректен или размер тела не совпадает с ним
+     * @throws IOException             при ошибке чтения запроса или записи файла
+     */
+    public PhotoUploadSessionResponse writeChunk(Long userDetailsId, String id, String contentRange,
+                                                 InputStream content) throws IOException {
+        UploadSession session = find(userDetailsId, id);
+        Matcher range = contentRange != null ? CONTENT_RANGE.matcher(contentRange.trim()) : null;
+        if (range == null || !range.matches()) {
+            throw new ValidationException("Заголовок Content-Range должен иметь вид bytes start-end/size");
+        }
+        long start = Long.parseLong(range.group(1));
+        long end = Long.parseLong(range.group(2)) + 1;
+        long total = Long.parseLong(range.group(3));
+        if (total != session.size || start >= end || end > session.size) {
+            throw new ValidationException("Диапазон " + contentRange + " не соответствует размеру файла " + session.size);
+        }
+
+        session.lock.readLock().lock();
+        try {
+            if (session.closed) {
+                throw new EntityNotFoundException("Загрузка " + id + " не найдена");
+            }
+            long position = start;
+            // Позиционная запись, в отличие от transferFrom, допускает позицию за концом файла
+            byte[] buffer = new byte[CHUNK_BUFFER_SIZE];
+            try (FileChannel channel = FileChannel.open(session.file, StandardOpenOption.WRITE)) {
+                while (position < end) {
+                    int read = content.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+                    if (read < 0) {
+                        break;
+                    }
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                    while (data.hasRemaining()) {
+                        position += channel.write(data, position);
+                    }
+                }
+            }
+            if (position < end || content.read() != -1) {
+                throw new ValidationException("Размер части не совпадает с диапазоном " + contentRange);
+            }
+            session.received(start, end, clock.instant().plus(sessionTtl));
+        } finally {
+            session.lock.readLock().unlock();
+        }
+        log.debug("Загрузка {}: получены байты {}-{}", id, start, end - 1);
+        return toResponse(session);
+    }
+
+    /**
+     * Завершить загрузку и сохранить фотографию пользователя
+     *
+     * @param userDetailsId ID пользователя
+     * @param id            идентификатор загрузки
+     * @throws EntityNotFoundException если загрузка или пользователь не найдены
+     * @throws ValidationException     если получены не все части файла или фотография отклонена
+     * @throws IOException             при ошибке сохранения фотографии
+     */
+    public void commit(Long userDetailsId, String id) throws IOException {
+        UploadSession session = find(userDetailsId, id);
+        // Загрузка остается открытой, пока фотография не сохранена: после сбоя клиент может повторить завершение.
+        // Блокировка записи не дает параллельно завершить, дописать или удалить ее по истечении срока
+        session.lock.writeLock().lock();
+        try {
+            if (session.closed) {
+                throw new EntityNotFoundException("Загрузка " + id + " не найдена");
+            }
+            if (session.receivedBytes() < session.size) {
+                throw new ValidationException("Получены не все части файла: " + session.receivedBytes() + " из " + session.size + " байт");
+            }
+
+            try {
+                userPhotoService.uploadUserPhoto(userDetailsId, session.fileName, session.file);
+            } catch (ValidationException e) {
+                close(session);
+                Files.deleteIfExists(session.file);
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                if (Files.exists(session.file)) {
+                    session.expiresAt = clock.instant().plus(sessionTtl);
+                    log.warn("Не удалось завершить загрузку {}, она доступна для повтора: {}", id, e.getMessage());
+                } else {
+                    // Файл уже передан в хранилище или удален при проверке размера, повторить завершение нельзя
+                    close(session);
+                }
+                throw e;
+            }
+            close(session);
+            Files.deleteIfExists(session.file);
+            log.info("Загрузка {} завершена, фотография пользователя с ID {} сохранена", id, userDetailsId);
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Отменить загрузку и удалить полученные части
+     *
+     * @param userDetailsId ID пользователя
+     * @param id            идентификатор загрузки
+     * @throws EntityNotFoundException если загрузка не найдена или истекла
+     */
+    public void cancel(Long userDetailsId, String id) {
+        UploadSession session = find(userDetailsId, id);
+        discard(session);
+        log.info("Загрузка {} отменена пользователем с ID {}", id, userDetailsId);
+    }
+
+    /**
+     * Удалить истекшие загрузки и файлы, оставшиеся от загрузок до перезапуска приложения
+     */
+    @Scheduled(fixedDelayString = "${photo.upload.cleanup-interval:5m}")
+    public void removeExpired() {
+        Instant now = clock.instant();
+        int removed = 0;
+        for (UploadSession session : sessions.values()) {
+            if (session.expiresAt.isBefore(now) && discard(session)) {
+                removed++;
+            }
+        }
+
+        Instant staleBefore = now.minus(sessionTtl);
+        try (Stream<Path> files = Files.list(stagingDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(PART_SUFFIX)
+                        || sessions.containsKey(name.substring(0, name.length() - PART_SUFFIX.length()))
+                        || !Files.getLastModifiedTime(file).toInstant().isBefore(staleBefore)) {
+                    continue;
+                }
+                Files.deleteIfExists(file);
+                removed++;
+            }
+        } catch (IOException e) {
+            log.error("Не удалось очистить каталог загрузок {}: {}", stagingDir, e.getMessage());
+        }
+        if (removed > 0) {
+            log.info("Удалено незавершенных загрузок фотографий: {}", removed);
+        }
+    }
+
+    private UploadSession find(Long userDetailsId, String id) {
+        UploadSession session = sessions.get(id);
+        // Чужая загрузка не отличается от несуществующей
+        if (session == null || !session.userDetailsId.equals(userDetailsId)) {
+            throw new EntityNotFoundException("Загрузка " + id + " не найдена");
+        }
+        return session;
+    }
+
+    private boolean discard(UploadSession session) {
+        // Загрузку с записью части в процессе удалит следующая очистка
+        if (!session.lock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            if (session.closed) {
+                return false;
+            }
+            close(session);
+            Files.deleteIfExists(session.file);
+            return true;
+        } catch (IOException e) {
+            log.error("Не удалось удалить файл загрузки {}: {}", session.file, e.getMessage());
+            return true;
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Закрыть загрузку под блокировкой записи и освободить место в лимите пользователя
+     */
+    private void close(UploadSession session) {
+        session.closed = true;
+        sessions.remove(session.id);
+        releaseSlot(session.userDetailsId);
+    }
+
+    private boolean reserveSlot(Long userDetailsId) {
+        boolean[] reserved = {false};
+        activeByUser.compute(userDetailsId, (id, active) -> {
+            int count = active != null ? active : 0;
+            if (count >= maxSessionsPerUser) {
+                return active;
+            }
+            reserved[0] = true;
+            return count + 1;
+        });
+        return reserved[0];
+    }
+
+    private void releaseSlot(Long userDetailsId) {
+        activeByUser.computeIfPresent(userDetailsId, (id, active) -> active > 1 ? active - 1 : null);
+    }
+
+    private static PhotoUploadSessionResponse toResponse(UploadSession session) {
+        synchronized (session) {
+            List<String> ranges = new ArrayList<>();
+            session.ranges.forEach((start, end) -> ranges.add(start + "-" + (end - 1)));
+            return new PhotoUploadSessionResponse(session.id, session.fileName, session.size,
+                    session.receivedBytes(), ranges, session.expiresAt);
+        }
+    }
+
+    /**
+     * Незавершенная загрузка. Запись частей идет параллельно под блокировкой чтения,
+     * завершение и удаление берут блокировку записи, чтобы не застать часть недописанной.
+     */
+    private static final class UploadSession {
+
+        private final String id;
+        private final Long userDetailsId;
+        private final String fileName;
+        private final long size;
+        private final Path file;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        // Полученные диапазоны без пересечений: начало -> конец (не включая)
+        private final NavigableMap<Long, Long> ranges = new TreeMap<>();
+        private volatile Instant expiresAt;
+        private volatile boolean closed;
+
+        private UploadSession(String id, Long userDetailsId, String fileName, long size, Path file, Instant expiresAt) {
+            this.id = id;
+            this.userDetailsId = userDetailsId;
+            this.fileName = fileName;
+            this.size = size;
+            this.file = file;
+            this.expiresAt = expiresAt;
+        }
+
+        private synchronized void received(long start, long end, Instant expiresAt) {
+            Map.Entry<Long, Long> before = ranges.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next = ranges.ceilingEntry(start);
+            while (next != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                ranges.remove(next.getKey());
+                next = ranges.ceilingEntry(start);
+            }
+            ranges.put(start, end);
+            this.expiresAt = expiresAt;
+        }
+
+        private synchronized long receivedBytes() {
+            long received = 0;
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                received += range.getValue() - range.getKey();
+            }
+            return received;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.telros.telros.service;
+
+import com.telros.telros.event.PhotoContentStoredEvent;
+import com.telros.telros.exception.ValidationException;
+import com.telros.telros.model.PhotoVariant;
+import com.telros.telros.repository.PhotoVariantRepository;
+import com.telros.telros.repository.UserPhotoRepository;
+import com.telros.telros.storage.ImageProcessor;
+import com.telros.telros.storage.PhotoBlob;
+import com.telros.telros.storage.PhotoStorage;
+import com.telros.telros.storage.StoredBlob;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис уменьшенных вариантов фотографий.
+ * После загрузки фотографии в фоне строятся варианты фиксированных размеров и оптимизированная копия
+ * с ограниченной большей стороной; все они перекодируются без EXIF. Обработка изображений нагружает
+ * процессор и память, поэтому выполняется в ограниченном пуле потоков с ограниченной очередью.
+ * Очередь в памяти не единственный источник работы: при обращении к еще не построенному варианту построение
+ * запрашивается повторно, а периодическая досборка находит фотографии без вариантов, например загруженные
+ * до появления вариантов, пропущенные из-за переполнения очереди или потерянные при перезапуске.
+ * После неудачи построение того же содержимого повторяется не раньше photo.variants.retry-interval.
+ * При photo.variants.async=false варианты строятся сразу в потоке запроса, что удобно в тестах.
+ */
+@Service
+@Slf4j
+public class PhotoVariantService implements DisposableBean {
+
+    private static final int BACKFILL_BATCH_SIZE = 100;
+    private static final int MAX_RETRY_ENTRIES = 10_000;
+
+    private final PhotoVariantRepository photoVariantRepository;
+    private final UserPhotoRepository userPhotoRepository;
+    private final PhotoStorage photoStorage;
+    private final Set<Integer> sizes;
+    private final int maxDimension;
+    private final long maxPixels;
+    private final float jpegQuality;
+    private final boolean async;
+    private final boolean backfillEnabled;
+    private final Duration retryInterval;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // Содержимое в очереди или в работе, чтобы не строить одни и те же варианты дважды
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Момент, раньше которого не повторяется построение содержимого, для которого оно не удалось
+    private final Map<String, Long> retryAfter = new ConcurrentHashMap<>();
+
+    public PhotoVariantService(PhotoVariantRepository photoVariantRepository,
+                               UserPhotoRepository userPhotoRepository,
+                               PhotoStorage photoStorage,
+                               MeterRegistry meterRegistry,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${photo.variants.sizes:48,128,512}") List<Integer> sizes,
+                               @Value("${photo.variants.max-dimension:2048}") int maxDimension,
+                               @Value("${photo.max-pixels:40000000}") long maxPixels,
+                               @Value("${photo.variants.jpeg-quality:0.85}") float jpegQuality,
+                               @Value("${photo.variants.threads:2}") int threads,
+                               @Value("${photo.variants.queue-capacity:100}") int queueCapacity,
+                               @Value("${photo.variants.async:true}") boolean async,
+                               @Value("${photo.variants.backfill.enabled:true}") boolean backfillEnabled,
+                               @Value("${photo.variants.retry-interval:1h}") Duration retryInterval) {
+        this.photoVariantRepository = photoVariantRepository;
+        this.userPhotoRepository = userPhotoRepository;
+        this.photoStorage = photoStorage;
+        this.sizes = new TreeSet<>(sizes);
+        this.sizes.add(maxDimension);
+        this.maxDimension = maxDimension;
+        this.maxPixels = maxPixels;
+        this.jpegQuality = jpegQuality;
+        this.async = async;
+        this.backfillEnabled = backfillEnabled;
+        this.retryInterval = retryInterval;
+        // Синхронное построение идет после фиксации транзакции загрузки, поэтому ему нужна своя транзакция;
+        // каждый вариант сохраняется в отдельной вложенной транзакции
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new VariantThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        registerMetrics(meterRegistry);
+        log.info("Варианты фотографий: размеры {}, потоков {}, очередь {}", this.sizes, threads, queueCapacity);
+    }
+
+    /**
+     * Поставить построение вариантов в очередь после фиксации загрузки фотографии
+     *
+     * @param event событие сохранения содержимого
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStored(PhotoContentStoredEvent event) {
+        requestGeneration(event.digest());
+    }
+
+    /**
+     * Поставить построение недостающих вариантов в очередь. Запрос для содержимого, которое уже в очереди,
+     * и для содержимого, построение которого недавно не удалось, игнорируется.
+     *
+     * @param digest SHA-256 хеш исходной фотографии
+     * @return true, если построение поставлено в очередь или уже выполнено
+     */
+    public boolean requestGeneration(String digest) {
+        Long notBefore = retryAfter.get(digest);
+        if (notBefore != null) {
+            if (System.currentTimeMillis() < notBefore) {
+                return false;
+            }
+            retryAfter.remove(digest, notBefore);
+        }
+        if (!pending.add(digest)) {
+            return false;
+        }
+        if (!async) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> generate(digest));
+            } finally {
+                pending.remove(digest);
+            }
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(digest);
+                } finally {
+                    pending.remove(digest);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(digest);
+            rejected.increment();
+            log.warn("Очередь построения вариантов фотографий переполнена, содержимое {} будет обработано позже", digest);
+            return false;
+        }
+    }
+
+    /**
+     * Поставить в очередь фотографии, у которых построены не все варианты. Фотографии перебираются
+     * по хешу содержимого, пока в очереди есть место; остальные будут поставлены при следующем запуске.
+     */
+    @Scheduled(initialDelayString = "${photo.variants.backfill.initial-delay:1m}",
+            fixedDelayString = "${photo.variants.backfill.interval:15m}")
+    public void backfill() {
+        if (!backfillEnabled) {
+            return;
+        }
+        try {
+            int requested = 0;
+            String after = "";
+            while (!async || executor.getQueue().remainingCapacity() > 0) {
+                List<String> digests = userPhotoRepository.findDigestsWithMissingVariants(
+                        after, sizes, sizes.size(), PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                if (digests.isEmpty()) {
+                    break;
+                }
+                for (String digest : digests) {
+                    if (requestGeneration(digest)) {
+                        requested++;
+                    }
+                }
+                after = digests.get(digests.size() - 1);
+            }
+            if (requested > 0) {
+                log.info("Поставлено в очередь построение вариантов для фотографий: {}", requested);
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка при поиске фотографий без вариантов: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Найти вариант фотографии заданного размера
+     *
+     * @param sourceDigest SHA-256 хеш исходной фотографии
+     * @param size         размер варианта
+     * @return вариант или пустой Optional, если он еще не построен или изображение не поддерживается
+     * @throws ValidationException если размер не входит в список допустимых
+     */
+    public Optional<PhotoVariant> findVariant(String sourceDigest, int size) {
+        if (!sizes.contains(size)) {
+            throw new ValidationException("Недопустимый размер фотографии: " + size + ", допустимые: " + sizes);
+        }
+        return photoVariantRepository.findBySourceDigestAndSize(sourceDigest, size);
+    }
+
+    /**
+     * Найти оптимизированную копию фотографии: без EXIF и с большей стороной не более photo.variants.max-dimension.
+     * Именно она отдается вместо исходной фотографии, как только построена.
+     *
+     * @param sourceDigest SHA-256 хеш исходной фотографии
+     * @return оптимизированная копия или пустой Optional, если она еще не построена или изображение не поддерживается
+     */
+    public Optional<PhotoVariant> findOptimized(String sourceDigest) {
+        return photoVariantRepository.findBySourceDigestAndSize(sourceDigest, maxDimension);
+    }
+
+    /**
+     * Построить недостающие варианты фотографии. Каждый следующий, меньший вариант
+     * уменьшается из предыдущего, а исходное изображение декодируется один раз.
+     *
+     * @param digest SHA-256 хеш исходной фотографии
+     */
+    void generate(String digest) {
+        try {
+            Set<Integer> existing = photoVariantRepository.findBySourceDigest(digest).stream()
+                    .map(PhotoVariant::getSize)
+                    .collect(Collectors.toSet());
+            List<Integer> missing = sizes.stream()
+                    .filter(size -> !existing.contains(size))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+            if (missing.isEmpty()) {
+                return;
+            }
+            Optional<PhotoBlob> blob = photoStorage.open(digest);
+            if (blob.isEmpty()) {
+                deferRetry(digest);
+                return;
+            }
+
+            Optional<BufferedImage> decoded;
+            try (InputStream content = blob.get().openStream()) {
+                decoded = ImageProcessor.decode(content, missing.get(0), maxPixels);
+            }
+            if (decoded.isEmpty()) {
+                log.debug("Формат содержимого {} не поддерживается, варианты не строятся", digest);
+                deferRetry(digest);
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            BufferedImage current = decoded.get();
+            for (int size : missing) {
+                current = ImageProcessor.scale(current, size);
+                save(digest, size, ImageProcessor.encode(current, jpegQuality));
+            }
+            log.debug("Построены варианты {} для содержимого {} за {} мс", missing, digest, System.currentTimeMillis() - start);
+        } catch (ValidationException e) {
+            log.warn("Варианты для содержимого {} не строятся: {}", digest, e.getMessage());
+            deferRetry(digest);
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            deferRetry(digest);
+            log.error("Не удалось построить варианты для содержимого {}: {}", digest, e.getMessage());
+        }
+    }
+
+    /**
+     * Отложить повторное построение на photo.variants.retry-interval. Чтобы таблица не росла без ограничений,
+     * при переполнении из нее удаляются истекшие записи, а если их нет - она очищается целиком.
+     */
+    private void deferRetry(String digest) {
+        long now = System.currentTimeMillis();
+        if (retryAfter.size() >= MAX_RETRY_ENTRIES) {
+            retryAfter.values().removeIf(notBefore -> notBefore <= now);
+            if (retryAfter.size() >= MAX_RETRY_ENTRIES) {
+                retryAfter.clear();
+            }
+        }
+        retryAfter.put(digest, now + retryInterval.toMillis());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void save(String sourceDigest, int size, ImageProcessor.Encoded encoded) throws IOException {
+        StoredBlob stored = photoStorage.store(new ByteArrayInputStream(encoded.data()));
+        PhotoVariant variant = new PhotoVariant();
+        variant.setSourceDigest(sourceDigest);
+        variant.setSize(size);
+        variant.setContentDigest(stored.digest());
+        variant.setContentType(encoded.contentType());
+        variant.setWidth(encoded.width());
+        variant.setHeight(encoded.height());
+        variant.setFileSize(stored.size());
+        try {
+            // Идентификаторы выделяются из последовательности, поэтому без flush INSERT откладывается до фиксации
+            // и нарушение уникальности вылетело бы за пределы этого метода. Отдельная транзакция не дает
+            // ошибке отметить для отката транзакцию синхронного построения
+            transactionTemplate.executeWithoutResult(status -> photoVariantRepository.saveAndFlush(variant));
+        } catch (DataIntegrityViolationException e) {
+            // Такой же вариант параллельно построил другой поток
+            log.debug("Вариант {} для содержимого {} уже существует", size, sourceDigest);
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("photo.variants.queue", executor, e -> e.getQueue().size())
+                .description("Количество фотографий в очереди на построение вариантов")
+                .register(registry);
+        FunctionCounter.builder("photo.variants.rejected", rejected, LongAdder::sum)
+                .description("Количество фотографий, пропущенных из-за переполнения очереди")
+                .register(registry);
+        FunctionCounter.builder("photo.variants.failed", failed, LongAdder::sum)
+                .description("Количество ошибок построения вариантов")
+                .register(registry);
+    }
+
+    private static final class VariantThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "photo-variants-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
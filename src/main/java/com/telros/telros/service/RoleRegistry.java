@@ -0,0 +1,133 @@
+package com.telros.telros.service;
+
+import com.telros.telros.model.ERole;
+import com.telros.telros.model.Role;
+import com.telros.telros.repository.RoleRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Реестр ролей, загружаемый из базы данных один раз при старте.
+ * Загрузка выполняется при создании бина, то есть до того, как веб-сервер начнет принимать запросы.
+ * Набор ролей фиксирован перечислением {@link ERole}, поэтому повторная загрузка
+ * выполняется только по явному действию администратора.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoleRegistry {
+
+    private static final Map<ERole, GrantedAuthority> AUTHORITIES;
+
+    static {
+        EnumMap<ERole, GrantedAuthority> authorities = new EnumMap<>(ERole.class);
+        for (ERole role : ERole.values()) {
+            authorities.put(role, new SimpleGrantedAuthority(role.name()));
+        }
+        AUTHORITIES = Collections.unmodifiableMap(authorities);
+    }
+
+    private final RoleRepository roleRepository;
+
+    private volatile Map<ERole, Role> roles = Collections.emptyMap();
+
+    /**
+     * Создает отсутствующие в базе данных роли и загружает реестр
+     */
+    @PostConstruct
+    public synchronized void init() {
+        refresh();
+
+        boolean created = false;
+        for (ERole name : ERole.values()) {
+            if (!roles.containsKey(name)) {
+                roleRepository.save(new Role(name));
+                created = true;
+            }
+        }
+
+        if (created) {
+            log.info("Роли успешно созданы");
+            refresh();
+        }
+    }
+
+    /**
+     * Перечитывает роли из базы данных
+     */
+    public synchronized void refresh() {
+        EnumMap<ERole, Role> loaded = new EnumMap<>(ERole.class);
+        roleRepository.findAll().forEach(role -> loaded.put(role.getName(), role));
+        roles = Collections.unmodifiableMap(loaded);
+        log.info("Реестр ролей загружен: {}", loaded.keySet());
+    }
+
+    /**
+     * Возвращает роль по имени
+     *
+     * @param name имя роли
+     * @return роль
+     * @throws IllegalStateException если роль отсутствует в базе данных
+     */
+    public Role get(ERole name) {
+        Role role = roles.get(name);
+        if (role == null) {
+            log.error("Роль {} не найдена в реестре ролей", name);
+            throw new IllegalStateException("Ошибка: Роль не найдена.");
+        }
+        return role;
+    }
+
+    /**
+     * Определяет роли по именам из запроса на регистрацию.
+     * "admin" соответствует ROLE_ADMIN, любое другое имя - ROLE_USER,
+     * при отсутствии ролей назначается ROLE_USER.
+     *
+     * @param requested имена ролей из запроса
+     * @return роли пользователя
+     */
+    public Set<Role> resolve(Set<String> requested) {
+        Set<Role> resolved = new HashSet<>();
+        if (requested == null) {
+            log.debug("Роли не указаны, назначается роль по умолчанию: ROLE_USER");
+            resolved.add(get(ERole.ROLE_USER));
+            return resolved;
+        }
+
+        requested.forEach(role -> {
+            log.debug("Обработка роли: {}", role);
+            resolved.add(get("admin".equals(role) ? ERole.ROLE_ADMIN : ERole.ROLE_USER));
+        });
+        return resolved;
+    }
+
+    /**
+     * Проверяет наличие роли в реестре
+     *
+     * @param name имя роли
+     * @return true если роль загружена
+     */
+    public boolean contains(ERole name) {
+        return roles.containsKey(name);
+    }
+
+    /**
+     * Возвращает общий экземпляр GrantedAuthority для роли
+     *
+     * @param name имя роли
+     * @return GrantedAuthority
+     */
+    public static GrantedAuthority authorityOf(ERole name) {
+        return AUTHORITIES.get(name);
+    }
+}
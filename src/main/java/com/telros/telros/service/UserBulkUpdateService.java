@@ -0,0 +1,279 @@
+package com.telros.telros.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.telros.telros.dto.request.UserDetailsRequest;
+import com.telros.telros.dto.response.BulkUpdateResponse;
+import com.telros.telros.dto.response.BulkUpdateResult;
+import com.telros.telros.dto.response.BulkUpdateResult.Status;
+import com.telros.telros.event.UserDetailsChangedEvent;
+import com.telros.telros.exception.ValidationException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис пакетного частичного обновления детальной информации пользователей (JSON Merge Patch).
+ * Изменяются только переданные поля; записи с одинаковым набором полей
+ * обновляются одним JDBC-пакетом, все пакеты выполняются в одной транзакции.
+ */
+@Service
+@Slf4j
+public class UserBulkUpdateService {
+
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    /**
+     * Поля детальной информации, которые можно изменить пакетно
+     */
+    private enum PatchField {
+        LAST_NAME("lastName", "last_name", Types.VARCHAR),
+        FIRST_NAME("firstName", "first_name", Types.VARCHAR),
+        MIDDLE_NAME("middleName", "middle_name", Types.VARCHAR),
+        BIRTH_DATE("birthDate", "birth_date", Types.DATE),
+        PHONE_NUMBER("phoneNumber", "phone_number", Types.VARCHAR);
+
+        private final String property;
+        private final String column;
+        private final int sqlType;
+
+        PatchField(String property, String column, int sqlType) {
+            this.property = property;
+            this.column = column;
+            this.sqlType = sqlType;
+        }
+
+        static PatchField byProperty(String property) {
+            for (PatchField field : values()) {
+                if (field.property.equals(property)) {
+                    return field;
+                }
+            }
+            throw new ValidationException("Поле '" + property + "' не поддерживается");
+        }
+    }
+
+    /**
+     * Разобранное изменение одной записи
+     */
+    private record Patch(int index, long id, Long expectedVersion, EnumMap<PatchField, Object> values) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxSize;
+
+    public UserBulkUpdateService(JdbcTemplate jdbcTemplate,
+                                 NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                 Validator validator,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${users.bulk-update.max-size:1000}") int maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Частично обновить детальную информацию нескольких пользователей.
+     * Каждый элемент содержит id, необязательную ожидаемую version и изменяемые поля;
+     * отсутствующее поле не меняется, null очищает значение.
+     *
+     * @param items изменения
+     * @return результаты по каждому элементу
+     * @throws ValidationException если пакет пуст или превышает допустимый размер
+     */
+    @Transactional
+    public BulkUpdateResponse update(List<JsonNode> items) {
+        if (items == null || items.isEmpty()) {
+            throw new ValidationException("Пакет изменений пуст");
+        }
+        if (items.size() > maxSize) {
+            throw new ValidationException("Размер пакета превышает " + maxSize + " записей");
+        }
+        log.info("Пакетное обновление пользователей: {} записей", items.size());
+
+        BulkUpdateResult[] results = new BulkUpdateResult[items.size()];
+        List<Patch> patches = new ArrayList<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                Patch patch = parse(i, items.get(i));
+                if (!seenIds.add(patch.id())) {
+                    throw new ValidationException("ID " + patch.id() + " повторяется в запросе");
+                }
+                patches.add(patch);
+            } catch (ValidationException e) {
+                JsonNode id = items.get(i) == null ? null : items.get(i).get("id");
+                results[i] = new BulkUpdateResult(i, id != null && id.canConvertToLong() ? id.asLong() : null,
+                        Status.INVALID, e.getMessage());
+            }
+        }
+
+        Map<Long, Long> versions = loadVersions(seenIds);
+        Map<String, List<Patch>> groups = new LinkedHashMap<>();
+        for (Patch patch : patches) {
+            Long version = versions.get(patch.id());
+            if (version == null) {
+                results[patch.index()] = new BulkUpdateResult(patch.index(), patch.id(), Status.NOT_FOUND,
+                        "Пользователь с ID " + patch.id() + " не найден");
+            } else if (patch.expectedVersion() != null && !patch.expectedVersion().equals(version)) {
+                results[patch.index()] = new BulkUpdateResult(patch.index(), patch.id(), Status.CONFLICT,
+                        "Текущая версия " + version + ", ожидалась " + patch.expectedVersion());
+            } else {
+                groups.computeIfAbsent(buildSql(patch), sql -> new ArrayList<>()).add(patch);
+            }
+        }
+
+        List<Long> updatedIds = new ArrayList<>();
+        for (Map.Entry<String, List<Patch>> group : groups.entrySet()) {
+            executeGroup(group.getKey(), group.getValue(), results, updatedIds);
+        }
+        if (!updatedIds.isEmpty()) {
+            eventPublisher.publishEvent(new UserDetailsChangedEvent(updatedIds));
+        }
+
+        List<BulkUpdateResult> resultList = List.of(results);
+        log.info("Пакетное обновление завершено: изменено {}, отклонено {}, пакетов {}",
+                updatedIds.size(), results.length - updatedIds.size(), groups.size());
+        return new BulkUpdateResponse(updatedIds.size(), results.length - updatedIds.size(), resultList);
+    }
+
+    private void executeGroup(String sql, List<Patch> patches, BulkUpdateResult[] results, List<Long> updatedIds) {
+        Patch first = patches.get(0);
+        int[] types = new int[first.values().size() + 1 + (first.expectedVersion() != null ? 1 : 0)];
+        int t = 0;
+        for (PatchField field : first.values().keySet()) {
+            types[t++] = field.sqlType;
+        }
+        types[t++] = Types.BIGINT;
+        if (first.expectedVersion() != null) {
+            types[t] = Types.BIGINT;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(patches.size());
+        for (Patch patch : patches) {
+            List<Object> args = new ArrayList<>(patch.values().values());
+            args.add(patch.id());
+            if (patch.expectedVersion() != null) {
+                args.add(patch.expectedVersion());
+            }
+            batchArgs.add(args.toArray());
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(sql, batchArgs, types);
+        for (int i = 0; i < patches.size(); i++) {
+            Patch patch = patches.get(i);
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                results[patch.index()] = new BulkUpdateResult(patch.index(), patch.id(), Status.UPDATED, null);
+                updatedIds.add(patch.id());
+            } else {
+                results[patch.index()] = new BulkUpdateResult(patch.index(), patch.id(), Status.CONFLICT,
+                        "Запись изменена параллельным запросом");
+            }
+        }
+    }
+
+    private static String buildSql(Patch patch) {
+        String assignments = patch.values().keySet().stream()
+                .map(field -> field.column + " = ?")
+                .collect(Collectors.joining(", "));
+        return "update user_details set " + assignments + ", version = version + 1 where id = ?"
+                + (patch.expectedVersion() != null ? " and version = ?" : "");
+    }
+
+    private Patch parse(int index, JsonNode item) {
+        if (item == null || !item.isObject()) {
+            throw new ValidationException("Элемент должен быть JSON-объектом");
+        }
+        JsonNode idNode = item.get("id");
+        if (idNode == null || !idNode.canConvertToLong() || !idNode.isIntegralNumber()) {
+            throw new ValidationException("Не указан ID пользователя");
+        }
+        JsonNode versionNode = item.get("version");
+        Long expectedVersion = null;
+        if (versionNode != null && !versionNode.isNull()) {
+            if (!versionNode.isIntegralNumber()) {
+                throw new ValidationException("Версия должна быть целым числом");
+            }
+            expectedVersion = versionNode.asLong();
+        }
+
+        EnumMap<PatchField, Object> values = new EnumMap<>(PatchField.class);
+        Iterator<Map.Entry<String, JsonNode>> fields = item.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> entry = fields.next();
+            if (entry.getKey().equals("id") || entry.getKey().equals("version")) {
+                continue;
+            }
+            PatchField field = PatchField.byProperty(entry.getKey());
+            values.put(field, convert(field, entry.getValue()));
+        }
+        if (values.isEmpty()) {
+            throw new ValidationException("Нет полей для изменения");
+        }
+        return new Patch(index, idNode.asLong(), expectedVersion, values);
+    }
+
+    private Object convert(PatchField field, JsonNode node) {
+        Object value;
+        if (node.isNull()) {
+            value = null;
+        } else if (!node.isTextual()) {
+            throw new ValidationException(field.property + ": ожидается строка или null");
+        } else if (field == PatchField.BIRTH_DATE) {
+            try {
+                value = LocalDate.parse(node.asText());
+            } catch (DateTimeParseException e) {
+                throw new ValidationException(field.property + ": ожидается дата в формате ГГГГ-ММ-ДД");
+            }
+        } else {
+            value = node.asText();
+        }
+
+        Set<ConstraintViolation<UserDetailsRequest>> violations =
+                validator.validateValue(UserDetailsRequest.class, field.property, value);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(v -> field.property + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return value;
+    }
+
+    private Map<Long, Long> loadVersions(Set<Long> ids) {
+        Map<Long, Long> versions = new HashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, idList.size()));
+            namedParameterJdbcTemplate.query("select id, version from user_details where id in (:ids)",
+                    Map.of("ids", chunk),
+                    rs -> { versions.put(rs.getLong("id"), rs.getLong("version")); });
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,164 @@
+package com.telros.telros.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.telros.telros.dto.response.UserDetailsResponse;
+import com.telros.telros.dto.response.UserResponse;
+import com.telros.telros.exception.ValidationException;
+import com.telros.telros.mapper.UserMapper;
+import com.telros.telros.repository.UserRepository;
+import com.telros.telros.repository.projection.UserRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Сервис потоковой выгрузки справочника пользователей.
+ * Пользователи читаются курсором и записываются в ответ по одному,
+ * поэтому расход памяти не зависит от количества пользователей.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UserExportService {
+
+    private static final String[] CSV_HEADER = {
+            "id", "username", "email", "lastName", "firstName", "middleName", "birthDate", "phoneNumber", "hasPhoto"
+    };
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Формат выгрузки
+     */
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Получить формат по имени из запроса
+         *
+         * @param name имя формата (без учета регистра)
+         * @return формат выгрузки
+         * @throws ValidationException если формат не поддерживается
+         */
+        public static Format fromName(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new ValidationException("Формат выгрузки '" + name + "' не поддерживается");
+            }
+        }
+    }
+
+    /**
+     * Выгрузить всех пользователей в указанном формате
+     *
+     * @param format формат выгрузки
+     * @param out    поток ответа
+     * @return количество выгруженных пользователей
+     * @throws IOException при ошибке записи
+     */
+    @Transactional(readOnly = true)
+    public long export(Format format, OutputStream out) throws IOException {
+        log.info("Выгрузка пользователей в формате {}", format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long count;
+        try (Stream<UserRow> rows = userRepository.streamAllRows()) {
+            Iterator<UserResponse> users = rows.map(userMapper::userRowToUserResponse).iterator();
+            count = switch (format) {
+                case NDJSON -> writeNdjson(users, writer);
+                case CSV -> writeCsv(users, writer);
+            };
+        }
+        writer.flush();
+        log.info("Выгрузка пользователей завершена, количество: {}", count);
+        return count;
+    }
+
+    private long writeNdjson(Iterator<UserResponse> users, Writer writer) throws IOException {
+        // Без сброса после каждой записи: буфер отправляется клиенту порциями по FLUSH_EVERY_ROWS пользователей
+        ObjectWriter objectWriter = objectMapper.writerFor(UserResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        long count = 0;
+        while (users.hasNext()) {
+            objectWriter.writeValue(generator, users.next());
+            generator.writeRaw('\n');
+            count++;
+            if (count % FLUSH_EVERY_ROWS == 0) {
+                generator.flush();
+                writer.flush();
+            }
+        }
+        generator.flush();
+        return count;
+    }
+
+    private long writeCsv(Iterator<UserResponse> users, Writer writer) throws IOException {
+        writeCsvLine(writer, (Object[]) CSV_HEADER);
+        long count = 0;
+        while (users.hasNext()) {
+            UserResponse user = users.next();
+            UserDetailsResponse details = user.getUserDetails();
+            if (details == null) {
+                writeCsvLine(writer, user.getId(), user.getUsername(), user.getEmail(),
+                        null, null, null, null, null, false);
+            } else {
+                writeCsvLine(writer, user.getId(), user.getUsername(), user.getEmail(),
+                        details.getLastName(), details.getFirstName(), details.getMiddleName(),
+                        details.getBirthDate(), details.getPhoneNumber(), details.isHasPhoto());
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static void writeCsvLine(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
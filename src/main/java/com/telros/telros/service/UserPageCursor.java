@@ -0,0 +1,44 @@
+package com.telros.telros.service;
+
+import com.telros.telros.exception.ValidationException;
+import com.telros.telros.repository.UserSortField;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в постраничном списке пользователей: поле и направление сортировки,
+ * ID и значение поля сортировки у последней выданной записи.
+ * Клиенту передается в виде непрозрачной строки.
+ */
+record UserPageCursor(UserSortField sortField, boolean descending, long lastId, String lastValue) {
+
+    private static final String SEPARATOR = ":";
+
+    /**
+     * @return курсор в виде строки base64url
+     */
+    String encode() {
+        String raw = sortField.name() + SEPARATOR + (descending ? "desc" : "asc") + SEPARATOR + lastId
+                + SEPARATOR + (lastValue == null ? "" : lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разобрать курсор, полученный от клиента
+     *
+     * @param cursor строка курсора
+     * @return позиция
+     * @throws ValidationException если курсор поврежден
+     */
+    static UserPageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 4);
+            return new UserPageCursor(UserSortField.valueOf(parts[0]), "desc".equals(parts[1]),
+                    Long.parseLong(parts[2]), parts[3]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new ValidationException("Некорректный курсор страницы");
+        }
+    }
+}
@@ -1,28 +1,71 @@
 package com.telros.telros.service;
 
+import com.telros.telros.event.PhotoContentReleasedEvent;
+import com.telros.telros.event.PhotoContentStoredEvent;
+import com.telros.telros.exception.ValidationException;
+import com.telros.telros.model.PhotoVariant;
 import com.telros.telros.model.UserDetails;
 import com.telros.telros.model.UserPhoto;
 import com.telros.telros.repository.UserDetailsRepository;
 import com.telros.telros.repository.UserPhotoRepository;
+import com.telros.telros.storage.ImageDimensions;
+import com.telros.telros.storage.ImageProcessor;
+import com.telros.telros.storage.LimitedInputStream;
+import com.telros.telros.storage.PhotoBlob;
+import com.telros.telros.storage.PhotoBlobCache;
+import com.telros.telros.storage.PhotoContent;
+import com.telros.telros.storage.PhotoContentTypes;
+import com.telros.telros.storage.PhotoStorage;
+import com.telros.telros.storage.StoredBlob;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Optional;
 
 /**
- * Сервис для работы с фотографиями пользователей
+ * Сервис для работы с фотографиями пользователей.
+ * Содержимое фотографий лежит в {@link PhotoStorage}, в базе данных хранятся только метаданные и хеш.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class UserPhotoService {
 
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Начало файла, по которому определяются тип и размеры изображения. Помещается в буфер загрузки,
+     * поэтому содержимое после сохранения в хранилище повторно не читается.
+     * Если заголовок изображения длиннее (например, JPEG с большими метаданными), размеры не заполняются.
+     */
+    private static final int HEADER_LENGTH = UPLOAD_BUFFER_SIZE;
+
     private final UserPhotoRepository userPhotoRepository;
     private final UserDetailsRepository userDetailsRepository;
+    private final PhotoStorage photoStorage;
+    private final PhotoBlobCache photoBlobCache;
+    private final PhotoVariantService photoVariantService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${photo.upload.max-size:10MB}")
+    private DataSize maxUploadSize;
+
+    @Value("${photo.max-pixels:40000000}")
+    private long maxPixels;
 
     /**
      * Получить фотографию пользователя по ID пользователя
@@ -49,22 +92,181 @@ public class UserPhotoService {
     }
 
     /**
-     * Загрузить или обновить фотографию пользователя
+     * Определить содержимое фотографии или ее уменьшенного варианта по метаданным, не обращаясь к хранилищу.
+     * Без размера отдается оптимизированная копия без EXIF, а пока она не построена - исходная фотография.
+     *
+     * @param photo фотография
+     * @param size  размер варианта или null для оптимизированной копии
+     * @return хеш, тип и дата изменения содержимого
+     */
+    public PhotoContent resolvePhotoContent(UserPhoto photo, Integer size) {
+        Optional<PhotoContent> variant = resolveVariant(photo.getContentDigest(), size);
+        if (variant.isPresent()) {
+            return variant.get();
+        }
+        log.debug("Вариант {} фотографии с ID {} еще не построен, отдается исходная фотография", size, photo.getId());
+        requestVariants(photo.getContentDigest(), photo.getFileType());
+        return new PhotoContent(photo.getContentDigest(), photo.getFileType(), isProvisional(photo.getFileType(), size), -1);
+    }
+
+    /**
+     * Определить содержимое по хешу, не загружая фотографию целиком и не обращаясь к хранилищу.
+     * Тип исходного содержимого берется из метаданных фотографии, определенный по сигнатуре при загрузке.
+     *
+     * @param digest SHA-256 хеш исходного содержимого
+     * @param size   размер варианта или null для оптимизированной копии
+     * @return хеш, тип и дата изменения содержимого
+     * @throws EntityNotFoundException если ни одна фотография не ссылается на содержимое
+     */
+    public PhotoContent resolvePhotoContentByDigest(String digest, Integer size) {
+        Optional<PhotoContent> variant = resolveVariant(digest, size);
+        if (variant.isPresent()) {
+            return variant.get();
+        }
+        String contentType = userPhotoRepository.findFileTypesByContentDigest(digest, PageRequest.of(0, 1))
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException("Фотография не найдена"));
+        requestVariants(digest, contentType);
+        return new PhotoContent(digest, contentType, isProvisional(contentType, size), -1);
+    }
+
+    /**
+     * Открыть содержимое в хранилище. Вызывается после проверки условных заголовков,
+     * поэтому ответы 304 не читают содержимое и не заполняют кэш.
+     *
+     * @param content      содержимое, определенное по метаданным
+     * @param metadataOnly содержимое не будет отправлено (HEAD): кэш не заполняется
+     * @return открытое содержимое
+     * @throws EntityNotFoundException если содержимое отсутствует в хранилище
+     * @throws IOException             при ошибке доступа к хранилищу
+     */
+    public PhotoBlob openPhotoBlob(PhotoContent content, boolean metadataOnly) throws IOException {
+        Optional<PhotoBlob> blob = metadataOnly ? photoStorage.open(content.digest()) : photoBlobCache.open(content.digest());
+        return blob.orElseThrow(() -> {
+            log.error("Содержимое фотографии {} отсутствует в хранилище", content.digest());
+            return new EntityNotFoundException("Содержимое фотографии не найдено");
+        });
+    }
+
+    private Optional<PhotoContent> resolveVariant(String sourceDigest, Integer size) {
+        Optional<PhotoVariant> variant = size != null
+                ? photoVariantService.findVariant(sourceDigest, size)
+                : photoVariantService.findOptimized(sourceDigest);
+        return variant.map(v -> new PhotoContent(v.getContentDigest(), v.getContentType(), false,
+                v.getCreatedAt().getTime()));
+    }
+
+    /**
+     * Запросить построение вариантов изображения, которое отдается вместо еще не построенного варианта.
+     * Событие загрузки могло быть потеряно, поэтому без этого фотография осталась бы без вариантов.
+     */
+    private void requestVariants(String digest, String contentType) {
+        if (contentType != null && contentType.startsWith("image/")) {
+            photoVariantService.requestGeneration(digest);
+        }
+    }
+
+    /**
+     * Исходная фотография временна, пока для нее может появиться вариант: запрошенный размер
+     * или оптимизированная копия изображения. Остальное содержимое отдается как есть.
+     */
+    private static boolean isProvisional(String contentType, Integer size) {
+        return size != null || (contentType != null && contentType.startsWith("image/"));
+    }
+
+    /**
+     * Загрузить или обновить фотографию пользователя.
+     * Файл читается потоком через буфер фиксированного размера и сразу пишется в хранилище;
+     * размер и хеш считаются по ходу чтения, тип и размеры изображения определяются по началу файла,
+     * уже прочитанному в буфер.
      *
      * @param userDetailsId ID пользователя
      * @param file          файл фотографии
      * @throws EntityNotFoundException если пользователь не найден
-     * @throws IOException             если произошла ошибка при чтении файла
+     * @throws ValidationException     если изображение объявляет больше photo.max-pixels пикселей
+     * @throws IOException             если произошла ошибка при чтении файла или файл слишком большой
      */
     @Transactional
     public void uploadUserPhoto(Long userDetailsId, MultipartFile file) throws IOException {
         log.info("Загрузка фотографии для пользователя с ID: {}", userDetailsId);
-        UserDetails userDetails = userDetailsRepository.findById(userDetailsId)
+        UserDetails userDetails = lockUserDetails(userDetailsId);
+
+        byte[] header;
+        ImageDimensions dimensions;
+        StoredBlob blob;
+        try (InputStream content = new BufferedInputStream(
+                new LimitedInputStream(file.getInputStream(), maxUploadSize.toBytes()), UPLOAD_BUFFER_SIZE)) {
+            content.mark(HEADER_LENGTH);
+            header = content.readNBytes(HEADER_LENGTH);
+            content.reset();
+            dimensions = readDimensions(header);
+            blob = photoStorage.store(content);
+        }
+        savePhoto(userDetails, file.getOriginalFilename(), header, dimensions, blob);
+    }
+
+    /**
+     * Загрузить или обновить фотографию пользователя из готового файла, например собранного из частей.
+     * Файл передается в хранилище без повторного копирования и после вызова вызывающей стороне не принадлежит.
+     *
+     * @param userDetailsId ID пользователя
+     * @param fileName      имя файла
+     * @param file          файл фотографии
+     * @throws EntityNotFoundException если пользователь не найден
+     * @throws ValidationException     если изображение объявляет больше photo.max-pixels пикселей
+     * @throws IOException             если произошла ошибка при чтении файла или файл слишком большой
+     */
+    @Transactional
+    public void uploadUserPhoto(Long userDetailsId, String fileName, Path file) throws IOException {
+        log.info("Загрузка фотографии из файла для пользователя с ID: {}", userDetailsId);
+        UserDetails userDetails = lockUserDetails(userDetailsId);
+
+        if (Files.size(file) > maxUploadSize.toBytes()) {
+            Files.deleteIfExists(file);
+            throw new IOException("Размер файла превышает допустимые " + maxUploadSize.toBytes() + " байт");
+        }
+        byte[] header;
+        try (InputStream content = Files.newInputStream(file)) {
+            header = content.readNBytes(HEADER_LENGTH);
+        }
+        ImageDimensions dimensions;
+        try {
+            dimensions = readDimensions(header);
+        } catch (ValidationException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        StoredBlob blob = photoStorage.store(file);
+        savePhoto(userDetails, fileName, header, dimensions, blob);
+    }
+
+    /**
+     * Прочитать размеры по началу файла и отклонить изображение, объявляющее слишком много пикселей,
+     * до сохранения содержимого и построения вариантов
+     */
+    private ImageDimensions readDimensions(byte[] header) {
+        ImageDimensions dimensions = ImageDimensions.read(new ByteArrayInputStream(header)).orElse(null);
+        if (dimensions != null) {
+            ImageProcessor.checkPixels(dimensions, maxPixels);
+        }
+        return dimensions;
+    }
+
+    private UserDetails lockUserDetails(Long userDetailsId) {
+        return userDetailsRepository.findWithVersionIncrementById(userDetailsId)
                 .orElseThrow(() -> {
                     log.error("Пользователь с ID {} не найден", userDetailsId);
                     return new EntityNotFoundException("Пользователь с ID " + userDetailsId + " не найден");
                 });
+    }
 
+    /**
+     * Сохранить метаданные фотографии. Тип определяется по началу файла
+     */
+    private void savePhoto(UserDetails userDetails, String fileName, byte[] header, ImageDimensions dimensions,
+                           StoredBlob blob) {
+        Long userDetailsId = userDetails.getId();
         UserPhoto userPhoto = userPhotoRepository.findByUserDetails_Id(userDetailsId)
                 .orElse(new UserPhoto());
 
@@ -72,18 +274,27 @@ public class UserPhotoService {
             log.debug("Обновление существующей фотографии для пользователя с ID: {}", userDetailsId);
         }
 
-        userPhoto.setUserDetails(userDetails);
-        userPhoto.setFileName(file.getOriginalFilename());
-        userPhoto.setFileType(file.getContentType());
-        userPhoto.setData(file.getBytes());
-        userPhoto.setFileSize(file.getSize());
+        String previousDigest = userPhoto.getContentDigest();
+        String contentType = PhotoContentTypes.detect(header);
 
-        log.info("fileName: {}", file.getOriginalFilename());
-        log.info("contentType: {}", file.getContentType());
-        log.info("fileSize: {}", file.getSize());
-        log.info("bytes length: {}", file.getBytes().length);
+        if (!blob.digest().equals(previousDigest)) {
+            userPhoto.setUploadDate(nextUploadDate(previousDigest != null ? userPhoto.getUploadDate() : null));
+        }
+        userPhoto.setUserDetails(userDetails);
+        userPhoto.setFileName(fileName);
+        userPhoto.setFileType(contentType);
+        userPhoto.setContentDigest(blob.digest());
+        userPhoto.setFileSize(blob.size());
+        userPhoto.setWidth(dimensions != null ? dimensions.width() : null);
+        userPhoto.setHeight(dimensions != null ? dimensions.height() : null);
+        log.debug("Фотография {}: тип {}, размер {} байт, хеш {}",
+                fileName, contentType, blob.size(), blob.digest());
 
         userPhotoRepository.save(userPhoto);
+        eventPublisher.publishEvent(new PhotoContentStoredEvent(blob.digest()));
+        if (previousDigest != null && !previousDigest.equals(blob.digest())) {
+            eventPublisher.publishEvent(new PhotoContentReleasedEvent(previousDigest));
+        }
         log.info("Фотография для пользователя с ID {} успешно сохранена", userDetailsId);
     }
 
@@ -103,14 +314,32 @@ public class UserPhotoService {
 
         userPhotoRepository.findByUserDetails_Id(userDetailsId)
                 .ifPresentOrElse(userPhoto -> {
+                    // Наличие фотографии входит в ответ с детальной информацией, поэтому меняем его версию
+                    userDetailsRepository.findWithVersionIncrementById(userDetailsId);
                     UserDetails userDetails = userPhoto.getUserDetails();
                     if (userDetails != null) {
                         userDetails.setUserPhoto(null);
                     }
                     userPhotoRepository.delete(userPhoto);
+                    if (userPhoto.getContentDigest() != null) {
+                        eventPublisher.publishEvent(new PhotoContentReleasedEvent(userPhoto.getContentDigest()));
+                    }
                     log.info("Фотография пользователя с ID {} успешно удалена", userDetailsId);
                 }, () -> {
                     log.warn("Фотография для пользователя с ID {} не найдена, удаление не требуется", userDetailsId);
                 });
     }
+
+    /**
+     * Дата загрузки нового содержимого. Last-Modified передается с точностью до секунды,
+     * поэтому замененная фотография должна получить более позднюю секунду, чем прежняя,
+     * иначе клиент с If-Modified-Since получил бы 304 на новое содержимое.
+     */
+    private static Timestamp nextUploadDate(Timestamp previous) {
+        long now = System.currentTimeMillis();
+        if (previous == null) {
+            return new Timestamp(now);
+        }
+        return new Timestamp(Math.max(now, (previous.getTime() / 1000 + 1) * 1000));
+    }
 }
\ No newline at end of file
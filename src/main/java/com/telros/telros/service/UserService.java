@@ -1,21 +1,42 @@
 package com.telros.telros.service;
 
+import com.telros.telros.dto.response.UserBatchResponse;
+import com.telros.telros.dto.response.UserLookupResult;
+import com.telros.telros.dto.response.UserPageResponse;
 import com.telros.telros.dto.response.UserResponse;
+import com.telros.telros.dto.response.Versioned;
+import com.telros.telros.exception.PreconditionFailedException;
+import com.telros.telros.exception.ValidationException;
 import com.telros.telros.mapper.UserMapper;
 import com.telros.telros.model.User;
 import com.telros.telros.model.UserDetails;
 import com.telros.telros.dto.request.UserDetailsRequest;
 import com.telros.telros.dto.response.UserDetailsResponse;
+import com.telros.telros.event.UserDetailsChangedEvent;
+import com.telros.telros.event.UserDetailsDeletedEvent;
 import com.telros.telros.repository.UserDetailsRepository;
 import com.telros.telros.repository.UserRepository;
+import com.telros.telros.repository.UserSortField;
+import com.telros.telros.repository.projection.UserRow;
+import com.telros.telros.search.UserSearchIndex;
+import com.telros.telros.security.PhotoUrlSigner;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -29,6 +50,21 @@ public class UserService {
     private final UserRepository userRepository;
     private final UserDetailsRepository userDetailsRepository;
     private final UserMapper userMapper;
+    private final PhotoUrlSigner photoUrlSigner;
+    private final UserSearchIndex userSearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${users.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${users.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${users.search.max-results:50}")
+    private int maxSearchResults;
+
+    @Value("${users.batch.max-keys:100}")
+    private int maxBatchKeys;
 
     /**
      * Получить список всех пользователей с детальной информацией
@@ -37,11 +73,169 @@ public class UserService {
      */
     public List<UserResponse> getAllUsers() {
         log.info("Получение списка всех пользователей");
-        return userRepository.findAll().stream()
-                .map(userMapper::userToUserResponse)
+        return userRepository.findAllRows().stream()
+                .map(userMapper::userRowToUserResponse)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Получить страницу пользователей с детальной информацией.
+     * Если передан курсор, сортировка берется из него, а параметры sort и direction игнорируются.
+     *
+     * @param sort         поле сортировки (id, username, email)
+     * @param direction    направление сортировки (asc, desc)
+     * @param cursor       курсор, полученный с предыдущей страницей, или null для первой страницы
+     * @param size         размер страницы или null для размера по умолчанию
+     * @param includeTotal вернуть общее количество пользователей
+     * @return страница пользователей
+     * @throws ValidationException если параметры страницы некорректны
+     */
+    @Transactional(readOnly = true)
+    public UserPageResponse getUsersPage(String sort, String direction, String cursor, Integer size, boolean includeTotal) {
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + maxPageSize);
+        }
+
+        UserSortField sortField;
+        boolean descending;
+        Long lastId = null;
+        Object lastValue = null;
+        if (cursor != null && !cursor.isBlank()) {
+            UserPageCursor position = UserPageCursor.decode(cursor);
+            sortField = position.sortField();
+            descending = position.descending();
+            lastId = position.lastId();
+            lastValue = position.lastValue();
+        } else {
+            sortField = sort == null ? UserSortField.ID : UserSortField.fromName(sort);
+            descending = parseDirection(direction);
+        }
+        log.info("Получение страницы пользователей: сортировка {} {}, размер {}", sortField, descending ? "desc" : "asc", pageSize);
+
+        List<UserRow> rows = userRepository.findPage(sortField, descending, lastValue, lastId, pageSize + 1);
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) {
+            rows = rows.subList(0, pageSize);
+        }
+        List<UserResponse> items = rows.stream()
+                .map(userMapper::userRowToUserResponse)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasNext) {
+            UserRow last = rows.get(rows.size() - 1);
+            nextCursor = new UserPageCursor(sortField, descending, last.id(), sortValue(last, sortField)).encode();
+        }
+
+        Long total = null;
+        boolean totalEstimated = false;
+        if (includeTotal) {
+            total = userRepository.estimateCount();
+            totalEstimated = total != null;
+            if (total == null) {
+                total = userRepository.count();
+            }
+        }
+        return new UserPageResponse(items, nextCursor, total, totalEstimated);
+    }
+
+    private static boolean parseDirection(String direction) {
+        if (direction == null || direction.equalsIgnoreCase("asc")) {
+            return false;
+        }
+        if (direction.equalsIgnoreCase("desc")) {
+            return true;
+        }
+        throw new ValidationException("Направление сортировки должно быть asc или desc");
+    }
+
+    private static String sortValue(UserRow row, UserSortField sortField) {
+        return switch (sortField) {
+            case ID -> null;
+            case USERNAME -> row.username();
+            case EMAIL -> row.email();
+        };
+    }
+
+    /**
+     * Найти пользователей по ФИО, телефону или email
+     *
+     * @param query текст запроса
+     * @param limit максимальное количество результатов или null для значения по умолчанию
+     * @return найденные пользователи в порядке релевантности
+     * @throws ValidationException если запрос пуст или лимит некорректен
+     */
+    @Transactional(readOnly = true)
+    public List<UserResponse> searchUsers(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Строка поиска не должна быть пустой");
+        }
+        int maxResults = limit == null ? maxSearchResults : limit;
+        if (maxResults < 1 || maxResults > maxSearchResults) {
+            throw new ValidationException("Количество результатов должно быть от 1 до " + maxSearchResults);
+        }
+        log.info("Поиск пользователей по запросу: {}", query);
+
+        List<Long> ids = userSearchIndex.search(query, maxResults);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, UserRow> rows = userRepository.findRowsByDetailsIds(ids).stream()
+                .collect(Collectors.toMap(UserRow::detailsId, Function.identity()));
+        return ids.stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
+                .map(userMapper::userRowToUserResponse)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Получить несколько пользователей по ID детальной информации и/или именам одним запросом
+     *
+     * @param ids       ID детальной информации
+     * @param usernames имена пользователей
+     * @return результаты в порядке запроса, для ненайденных - признак found = false
+     * @throws ValidationException если ключи не переданы или их слишком много
+     */
+    @Transactional(readOnly = true)
+    public UserBatchResponse getUsersBatch(List<Long> ids, List<String> usernames) {
+        Set<Long> idKeys = ids == null ? Set.of() : new LinkedHashSet<>(ids);
+        Set<String> usernameKeys = usernames == null ? Set.of() : new LinkedHashSet<>(usernames);
+        if (idKeys.isEmpty() && usernameKeys.isEmpty()) {
+            throw new ValidationException("Не переданы ID или имена пользователей");
+        }
+        if (idKeys.size() + usernameKeys.size() > maxBatchKeys) {
+            throw new ValidationException("Можно запросить не более " + maxBatchKeys + " пользователей");
+        }
+        log.info("Пакетное получение пользователей: {} ID, {} имен", idKeys.size(), usernameKeys.size());
+
+        List<UserRow> rows;
+        if (usernameKeys.isEmpty()) {
+            rows = userRepository.findRowsByDetailsIds(idKeys);
+        } else if (idKeys.isEmpty()) {
+            rows = userRepository.findRowsByUsernames(usernameKeys);
+        } else {
+            rows = userRepository.findRowsByDetailsIdsOrUsernames(idKeys, usernameKeys);
+        }
+
+        Map<Long, UserResponse> byId = new HashMap<>();
+        Map<String, UserResponse> byUsername = new HashMap<>();
+        for (UserRow row : rows) {
+            UserResponse user = userMapper.userRowToUserResponse(row);
+            if (row.detailsId() != null) {
+                byId.put(row.detailsId(), user);
+            }
+            byUsername.put(row.username(), user);
+        }
+
+        Map<Long, UserLookupResult> idResults = new LinkedHashMap<>();
+        idKeys.forEach(id -> idResults.put(id, UserLookupResult.of(byId.get(id))));
+        Map<String, UserLookupResult> usernameResults = new LinkedHashMap<>();
+        usernameKeys.forEach(username -> usernameResults.put(username, UserLookupResult.of(byUsername.get(username))));
+        return new UserBatchResponse(idResults, usernameResults);
+    }
+
     /**
      * Получить детальную информацию о пользователе по ID
      *
@@ -50,13 +244,26 @@ public class UserService {
      * @throws EntityNotFoundException если пользователь не найден
      */
     public UserDetailsResponse getUserDetailsById(Long id) {
+        return getVersionedUserDetailsById(id).getBody();
+    }
+
+    /**
+     * Получить детальную информацию о пользователе по ID вместе с ETag.
+     * Тело ответа формируется только при обращении к нему.
+     *
+     * @param id ID пользователя
+     * @return детальная информация о пользователе с ETag
+     * @throws EntityNotFoundException если пользователь не найден
+     */
+    public Versioned<UserDetailsResponse> getVersionedUserDetailsById(Long id) {
         log.info("Получение информации о пользователе с ID: {}", id);
-        UserDetails userDetails = userDetailsRepository.findById(id)
+        UserRow row = userRepository.findRowByDetailsId(id)
                 .orElseThrow(() -> {
                     log.error("Пользователь с ID {} не найден", id);
                     return new EntityNotFoundException("Пользователь с ID " + id + " не найден");
                 });
-        return userMapper.userDetailsToUserDetailsResponse(userDetails);
+        return Versioned.lazy(ETags.userDetails(row.detailsId(), row.version(), photoUrlSigner.currentEpoch()),
+                () -> userMapper.userRowToUserDetailsResponse(row));
     }
 
     /**
@@ -67,20 +274,48 @@ public class UserService {
      * @throws UsernameNotFoundException если пользователь не найден
      */
     public UserDetailsResponse getUserDetailsByUsername(String username) {
+        return getVersionedUserDetailsByUsername(username).getBody();
+    }
+
+    /**
+     * Получить детальную информацию о пользователе по имени пользователя вместе с ETag.
+     * Тело ответа формируется только при обращении к нему.
+     *
+     * @param username имя пользователя
+     * @return детальная информация о пользователе с ETag
+     * @throws UsernameNotFoundException если пользователь не найден
+     */
+    public Versioned<UserDetailsResponse> getVersionedUserDetailsByUsername(String username) {
         log.info("Получение информации о пользователе по имени: {}", username);
-        User user = userRepository.findByUsername(username)
+        UserRow row = findRowWithDetails(username);
+        return Versioned.lazy(ETags.userDetails(row.detailsId(), row.version(), photoUrlSigner.currentEpoch()),
+                () -> userMapper.userRowToUserDetailsResponse(row));
+    }
+
+    /**
+     * Получить ID детальной информации о пользователе по имени пользователя, не формируя ответ
+     *
+     * @param username имя пользователя
+     * @return ID детальной информации
+     * @throws UsernameNotFoundException если пользователь не найден
+     * @throws EntityNotFoundException   если у пользователя нет детальной информации
+     */
+    public Long getUserDetailsIdByUsername(String username) {
+        return findRowWithDetails(username).detailsId();
+    }
+
+    private UserRow findRowWithDetails(String username) {
+        UserRow row = userRepository.findRowByUsername(username)
                 .orElseThrow(() -> {
                     log.error("Пользователь с именем {} не найден", username);
                     return new UsernameNotFoundException("Пользователь не найден: " + username);
                 });
 
-        UserDetails userDetails = userDetailsRepository.findByUserId(user.getId())
-                .orElseThrow(() -> {
-                    log.error("Детальная информация не найдена для пользователя: {}", username);
-                    return new EntityNotFoundException("Детальная информация не найдена для пользователя: " + username);
-                });
-
-        return userMapper.userDetailsToUserDetailsResponse(userDetails);
+        if (row.detailsId() == null) {
+            log.error("Детальная информация не найдена для пользователя: {}", username);
+            throw new EntityNotFoundException("Детальная информация не найдена для пользователя: " + username);
+        }
+        return row;
     }
 
     /**
@@ -88,11 +323,14 @@ public class UserService {
      *
      * @param username           имя пользователя
      * @param userDetailsRequest данные для создания/обновления
-     * @return обновленная детальная информация о пользователе
-     * @throws UsernameNotFoundException если пользователь не найден
+     * @param ifMatch            значение заголовка If-Match или null
+     * @return обновленная детальная информация о пользователе с новым ETag
+     * @throws UsernameNotFoundException   если пользователь не найден
+     * @throws PreconditionFailedException если текущая версия не соответствует If-Match
      */
     @Transactional
-    public UserDetailsResponse createOrUpdateUserDetails(String username, UserDetailsRequest userDetailsRequest) {
+    public Versioned<UserDetailsResponse> createOrUpdateUserDetails(String username, UserDetailsRequest userDetailsRequest,
+                                                                    String ifMatch) {
         log.info("Создание/обновление информации о пользователе: {}", username);
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> {
@@ -102,14 +340,17 @@ public class UserService {
 
         UserDetails userDetails = userDetailsRepository.findByUserId(user.getId())
                 .orElse(new UserDetails());
+        checkIfMatch(userDetails, ifMatch);
 
         userDetails.setUser(user);
         userMapper.updateUserDetailsFromRequest(userDetailsRequest, userDetails);
 
-        userDetails = userDetailsRepository.save(userDetails);
+        userDetails = userDetailsRepository.saveAndFlush(userDetails);
+        eventPublisher.publishEvent(UserDetailsChangedEvent.of(userDetails.getId()));
         log.info("Информация о пользователе {} успешно сохранена", username);
 
-        return userMapper.userDetailsToUserDetailsResponse(userDetails);
+        return Versioned.of(ETags.userDetails(userDetails.getId(), userDetails.getVersion(), photoUrlSigner.currentEpoch()),
+                userMapper.userDetailsToUserDetailsResponse(userDetails));
     }
 
     /**
@@ -126,6 +367,7 @@ public class UserService {
             throw new EntityNotFoundException("Пользователь с ID " + id + " не найден");
         }
         userDetailsRepository.deleteById(id);
+        eventPublisher.publishEvent(new UserDetailsDeletedEvent(id));
         log.info("Информация о пользователе с ID {} успешно удалена", id);
     }
 
@@ -134,11 +376,13 @@ public class UserService {
      *
      * @param id ID пользователя
      * @param userDetailsRequest данные для обновления
-     * @return обновленная детальная информация о пользователе
-     * @throws EntityNotFoundException если пользователь не найден
+     * @param ifMatch            значение заголовка If-Match или null
+     * @return обновленная детальная информация о пользователе с новым ETag
+     * @throws EntityNotFoundException     если пользователь не найден
+     * @throws PreconditionFailedException если текущая версия не соответствует If-Match
      */
     @Transactional
-    public UserDetailsResponse updateUserDetailsById(Long id, UserDetailsRequest userDetailsRequest) {
+    public Versioned<UserDetailsResponse> updateUserDetailsById(Long id, UserDetailsRequest userDetailsRequest, String ifMatch) {
         log.info("Обновление информации о пользователе с ID: {}", id);
         UserDetails userDetails = userDetailsRepository.findById(id)
                 .orElseThrow(() -> {
@@ -152,12 +396,22 @@ public class UserService {
             throw new EntityNotFoundException("Для пользователя с ID " + id + " не найдена основная информация");
         }
 
+        checkIfMatch(userDetails, ifMatch);
+
         userMapper.updateUserDetailsFromRequest(userDetailsRequest, userDetails);
-        userDetails = userDetailsRepository.save(userDetails);
+        userDetails = userDetailsRepository.saveAndFlush(userDetails);
+        eventPublisher.publishEvent(UserDetailsChangedEvent.of(id));
         log.info("Информация о пользователе с ID {} успешно обновлена", id);
 
-        return userMapper.userDetailsToUserDetailsResponse(userDetails);
+        return Versioned.of(ETags.userDetails(userDetails.getId(), userDetails.getVersion(), photoUrlSigner.currentEpoch()),
+                userMapper.userDetailsToUserDetailsResponse(userDetails));
     }
 
-
-}
\ No newline at end of file
+    private static void checkIfMatch(UserDetails userDetails, String ifMatch) {
+        String current = userDetails.getId() == null ? null : ETags.userDetails(userDetails.getId(), userDetails.getVersion());
+        if (!ETags.matches(ifMatch, current)) {
+            log.warn("Условие If-Match {} не выполнено, текущая версия {}", ifMatch, current);
+            throw new PreconditionFailedException("Ошибка: Данные пользователя были изменены, получите актуальную версию");
+        }
+    }
+}
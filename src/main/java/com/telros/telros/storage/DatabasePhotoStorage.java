@@ -0,0 +1,190 @@
+package com.telros.telros.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище фотографий в таблице photo_data.
+ * Используется, если выбран тип хранилища database, а также как источник содержимого,
+ * еще не перенесенного в файловое хранилище. Содержимое пишется потоком через временный файл,
+ * но при чтении драйвер PostgreSQL загружает bytea целиком, поэтому для больших объемов
+ * предпочтительно файловое хранилище.
+ */
+@Component
+@Slf4j
+public class DatabasePhotoStorage implements PhotoStorage {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DatabasePhotoStorage(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public StoredBlob store(InputStream content) throws IOException {
+        MessageDigest sha256 = sha256();
+        Path tmpFile = Files.createTempFile("photo-", ".part");
+        try {
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmpFile), sha256)) {
+                size = content.transferTo(out);
+            }
+            String digest = HexFormat.of().formatHex(sha256.digest());
+            if (touch(digest)) {
+                log.debug("Содержимое {} уже сохранено, повторная запись не требуется", digest);
+                return new StoredBlob(digest, size);
+            }
+            try (InputStream data = Files.newInputStream(tmpFile)) {
+                jdbcTemplate.update("insert into photo_data (digest, data, size, created_at) values (?, ?, ?, ?)", ps -> {
+                    ps.setString(1, digest);
+                    ps.setBinaryStream(2, data, size);
+                    ps.setLong(3, size);
+                    ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                });
+            } catch (DuplicateKeyException e) {
+                // Такое же содержимое параллельно сохранил другой запрос
+                touch(digest);
+            }
+            log.debug("Сохранено содержимое {} размером {} байт", digest, size);
+            return new StoredBlob(digest, size);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    @Override
+    public Optional<PhotoBlob> open(String digest) {
+        List<Long> sizes = jdbcTemplate.queryForList("select size from photo_data where digest = ?", Long.class, digest);
+        if (sizes.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new DatabaseBlob(digest, sizes.get(0)));
+    }
+
+    @Override
+    public boolean exists(String digest) {
+        Integer count = jdbcTemplate.queryForObject("select count(*) from photo_data where digest = ?", Integer.class, digest);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public void delete(String digest) {
+        if (jdbcTemplate.update("delete from photo_data where digest = ?", digest) > 0) {
+            log.debug("Удалено содержимое {}", digest);
+        }
+    }
+
+    @Override
+    public void forEachStoredBefore(Instant before, Consumer<String> action) {
+        jdbcTemplate.queryForList("select digest from photo_data where created_at < ?", String.class, Timestamp.from(before))
+                .forEach(action);
+    }
+
+    @Override
+    public boolean deleteIfStoredBefore(String digest, Instant before) {
+        // Проверка момента сохранения и удаление выполняются одним запросом
+        if (jdbcTemplate.update("delete from photo_data where digest = ? and created_at < ?", digest, Timestamp.from(before)) > 0) {
+            log.debug("Удалено содержимое {}", digest);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Получить хеши сохраненного содержимого по порядку, начиная после заданного
+     *
+     * @param after хеш, после которого начинается порция, или null для начала с первого
+     * @param limit максимальное количество
+     * @return список хешей
+     */
+    public List<String> findDigests(String after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.queryForList("select digest from photo_data order by digest limit ?", String.class, limit);
+        }
+        return jdbcTemplate.queryForList("select digest from photo_data where digest > ? order by digest limit ?",
+                String.class, after, limit);
+    }
+
+    private boolean touch(String digest) {
+        return jdbcTemplate.update("update photo_data set created_at = ? where digest = ?",
+                new Timestamp(System.currentTimeMillis()), digest) > 0;
+    }
+
+    private byte[] read(String digest) throws IOException {
+        List<byte[]> data = jdbcTemplate.queryForList("select data from photo_data where digest = ?", byte[].class, digest);
+        if (data.isEmpty()) {
+            throw new IOException("Содержимое " + digest + " удалено");
+        }
+        return data.get(0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 не поддерживается", e);
+        }
+    }
+
+    /**
+     * Содержимое, лежащее в таблице photo_data
+     */
+    private final class DatabaseBlob implements PhotoBlob {
+
+        private final String digest;
+        private final long size;
+
+        private DatabaseBlob(String digest, long size) {
+            this.digest = digest;
+            this.size = size;
+        }
+
+        @Override
+        public String digest() {
+            return digest;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public Optional<Path> path() {
+            return Optional.empty();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new ByteArrayInputStream(read(digest));
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(read(digest), (int) position, (int) count);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.telros.telros.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище фотографий в локальной файловой системе.
+ * Файл с содержимым лежит по пути {@code ab/cd/<sha256>}, где ab и cd - первые байты хеша,
+ * чтобы в одном каталоге не скапливалось слишком много файлов.
+ * Содержимое сначала пишется во временный файл с одновременным подсчетом хеша,
+ * а затем атомарно переносится на место, поэтому читатели никогда не видят недописанный файл.
+ * Содержимое, которое еще не перенесено из таблицы photo_data, читается из {@link DatabasePhotoStorage}.
+ */
+@Component
+@Primary
+@Slf4j
+@ConditionalOnProperty(name = "photo.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class FilesystemPhotoStorage implements PhotoStorage {
+
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+    private static final String TMP_DIR = "tmp";
+    private static final int SHARD_DEPTH = 3;
+
+    private final Path root;
+    private final Path tmp;
+    private final DatabasePhotoStorage legacyStorage;
+
+    public FilesystemPhotoStorage(@Value("${photo.storage.filesystem.root}") Path root,
+                                  DatabasePhotoStorage legacyStorage) {
+        this.root = root.toAbsolutePath().normalize();
+        this.legacyStorage = legacyStorage;
+        this.tmp = this.root.resolve(TMP_DIR);
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог хранилища фотографий " + this.root, e);
+        }
+        log.info("Хранилище фотографий в файловой системе: {}", this.root);
+    }
+
+    @Override
+    public StoredBlob store(InputStream content) throws IOException {
+        MessageDigest sha256 = sha256();
+        Path tmpFile = Files.createTempFile(tmp, "upload-", ".part");
+        try {
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmpFile), sha256)) {
+                size = content.transferTo(out);
+            }
+            return place(tmpFile, HexFormat.of().formatHex(sha256.digest()), size);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Сохранить готовый файл: хеш считается чтением файла, а сам файл переносится на место без копирования.
+     * Файл должен лежать в той же файловой системе, что и хранилище, иначе перенос сводится к копированию.
+     */
+    @Override
+    public StoredBlob store(Path file) throws IOException {
+        try {
+            MessageDigest sha256 = sha256();
+            long size;
+            try (InputStream content = new DigestInputStream(Files.newInputStream(file), sha256)) {
+                size = content.transferTo(OutputStream.nullOutputStream());
+            }
+            return place(file, HexFormat.of().formatHex(sha256.digest()), size);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public Optional<PhotoBlob> open(String digest) throws IOException {
+        Path path = resolve(digest);
+        if (!Files.isRegularFile(path)) {
+            return legacyStorage.open(digest);
+        }
+        return Optional.of(new FileBlob(digest, path, Files.size(path)));
+    }
+
+    @Override
+    public boolean exists(String digest) {
+        return Files.isRegularFile(resolve(digest)) || legacyStorage.exists(digest);
+    }
+
+    @Override
+    public void delete(String digest) throws IOException {
+        if (Files.deleteIfExists(resolve(digest))) {
+            log.debug("Удалено содержимое {}", digest);
+        }
+        legacyStorage.delete(digest);
+    }
+
+    @Override
+    public void forEachStoredBefore(Instant before, Consumer<String> action) throws IOException {
+        try (Stream<Path> files = Files.walk(root, SHARD_DEPTH)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (root.relativize(file).getNameCount() == SHARD_DEPTH
+                        && DIGEST.matcher(file.getFileName().toString()).matches()
+                        && storedBefore(file, before)) {
+                    action.accept(file.getFileName().toString());
+                }
+            }
+        }
+        legacyStorage.forEachStoredBefore(before, action);
+    }
+
+    @Override
+    public boolean deleteIfStoredBefore(String digest, Instant before) throws IOException {
+        Path path = resolve(digest);
+        boolean deleted = false;
+        // Между проверкой и удалением остается узкое окно, но повторное сохранение
+        // обновляет время изменения файла до фиксации ссылки, поэтому свежая ссылка сюда не попадает
+        if (storedBefore(path, before) && Files.deleteIfExists(path)) {
+            log.debug("Удалено содержимое {}", digest);
+            deleted = true;
+        }
+        return legacyStorage.deleteIfStoredBefore(digest, before) || deleted;
+    }
+
+    /**
+     * Перенести содержимое из таблицы photo_data в файловое хранилище
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @return true, если содержимое перенесено
+     * @throws IOException при ошибке чтения или записи
+     */
+    public boolean migrateFromDatabase(String digest) throws IOException {
+        Optional<PhotoBlob> legacy = legacyStorage.open(digest);
+        if (legacy.isEmpty()) {
+            return false;
+        }
+        if (!Files.isRegularFile(resolve(digest))) {
+            StoredBlob stored;
+            try (InputStream content = legacy.get().openStream()) {
+                stored = store(content);
+            }
+            if (!digest.equals(stored.digest())) {
+                throw new IOException("Хеш перенесенного содержимого " + stored.digest() + " не совпадает с " + digest);
+            }
+        }
+        legacyStorage.delete(digest);
+        return true;
+    }
+
+    /**
+     * Перенести готовый файл с посчитанным хешем на место. Если такое содержимое уже есть,
+     * у него обновляется время изменения, чтобы очистка не удалила его до фиксации новой ссылки.
+     */
+    private StoredBlob place(Path source, String digest, long size) throws IOException {
+        Path target = resolve(digest);
+        if (touch(target)) {
+            log.debug("Содержимое {} уже сохранено, повторная запись не требуется", digest);
+            return new StoredBlob(digest, size);
+        }
+        Files.createDirectories(target.getParent());
+        moveAtomically(source, target);
+        // Перенос сохраняет время изменения исходного файла, а оно может быть давним, например у собранной из частей загрузки
+        touch(target);
+        log.debug("Сохранено содержимое {} размером {} байт", digest, size);
+        return new StoredBlob(digest, size);
+    }
+
+    private static boolean touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static boolean storedBefore(Path file, Instant before) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(before);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Path resolve(String digest) {
+        if (digest == null || !DIGEST.matcher(digest).matches()) {
+            throw new IllegalArgumentException("Некорректный хеш содержимого: " + digest);
+        }
+        return root.resolve(digest.substring(0, 2)).resolve(digest.substring(2, 4)).resolve(digest);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Такое же содержимое параллельно сохранил другой запрос
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(source, target);
+            } catch (FileAlreadyExistsException ignored) {
+                // Такое же содержимое параллельно сохранил другой запрос
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 не поддерживается", e);
+        }
+    }
+
+    /**
+     * Содержимое, лежащее в файле
+     */
+    private record FileBlob(String digest, Path file, long size) implements PhotoBlob {
+
+        @Override
+        public Optional<Path> path() {
+            return Optional.of(file);
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long end = position + count;
+                while (position < end) {
+                    long transferred = channel.transferTo(position, end - position, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+            }
+        }
+    }
+}
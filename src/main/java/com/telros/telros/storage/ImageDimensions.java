@@ -0,0 +1,54 @@
+package com.telros.telros.storage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Размеры изображения в пикселях
+ *
+ * @param width  ширина
+ * @param height высота
+ */
+public record ImageDimensions(int width, int height) {
+
+    /**
+     * Число пикселей, объявленное в заголовке
+     *
+     * @return ширина, умноженная на высоту
+     */
+    public long pixels() {
+        return (long) width * height;
+    }
+
+    /**
+     * Прочитать размеры из заголовка изображения без декодирования пикселей
+     *
+     * @param content поток с содержимым изображения
+     * @return размеры или пустой Optional, если формат не распознан
+     */
+    public static Optional<ImageDimensions> read(InputStream content) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            if (input == null) {
+                return Optional.empty();
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return Optional.of(new ImageDimensions(reader.getWidth(0), reader.getHeight(0)));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.telros.telros.storage;
+
+import com.telros.telros.exception.ValidationException;
+import org.springframework.http.MediaType;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Обработка изображений средствами javax.imageio: декодирование с прореживанием,
+ * поворот по EXIF-ориентации, уменьшение и кодирование без исходных метаданных.
+ */
+public final class ImageProcessor {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1_MARKER = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    /**
+     * Закодированное изображение
+     *
+     * @param data        содержимое
+     * @param contentType MIME-тип
+     * @param width       ширина
+     * @param height      высота
+     */
+    public record Encoded(byte[] data, String contentType, int width, int height) {
+    }
+
+    private ImageProcessor() {
+    }
+
+    /**
+     * Декодировать изображение. Если оно значительно больше нужного размера, пиксели прореживаются
+     * уже при чтении, поэтому полноразмерный растр в памяти не создается. Размеры проверяются
+     * по заголовку до чтения пикселей.
+     *
+     * @param content      поток с содержимым
+     * @param minDimension минимальная длина большей стороны, которую должен сохранить результат
+     * @param maxPixels    максимальное объявленное число пикселей
+     * @return изображение с примененной EXIF-ориентацией или пустой Optional, если формат не поддерживается
+     * @throws IOException         при ошибке чтения
+     * @throws ValidationException если изображение объявляет больше maxPixels пикселей
+     */
+    public static Optional<BufferedImage> decode(InputStream content, int minDimension, long maxPixels)
+            throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            if (input == null) {
+                return Optional.empty();
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                checkPixels(new ImageDimensions(reader.getWidth(0), reader.getHeight(0)), maxPixels);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longest / minDimension);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                int orientation = orientation(reader.getImageMetadata(0));
+                return Optional.of(orient(reader.read(0, param), orientation));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Проверить, что изображение объявляет не больше допустимого числа пикселей
+     *
+     * @param dimensions размеры из заголовка изображения
+     * @param maxPixels  максимальное число пикселей
+     * @throws ValidationException если пикселей больше maxPixels
+     */
+    public static void checkPixels(ImageDimensions dimensions, long maxPixels) {
+        if (dimensions.pixels() > maxPixels) {
+            throw new ValidationException("Размер изображения " + dimensions.width() + "x" + dimensions.height()
+                    + " превышает допустимые " + maxPixels + " пикселей");
+        }
+    }
+
+    /**
+     * Уменьшить изображение так, чтобы большая сторона не превышала заданную.
+     * Уменьшение выполняется последовательными шагами в два раза, чтобы избежать зернистости.
+     *
+     * @param image        изображение
+     * @param maxDimension максимальная длина большей стороны
+     * @return уменьшенное изображение или исходное, если оно уже меньше
+     */
+    public static BufferedImage scale(BufferedImage image, int maxDimension) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int longest = Math.max(width, height);
+        if (longest <= maxDimension) {
+            return image;
+        }
+        double ratio = (double) maxDimension / longest;
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = resize(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight) {
+            current = resize(current, targetWidth, targetHeight);
+        }
+        return current;
+    }
+
+    /**
+     * Закодировать изображение: с прозрачностью - в PNG, иначе - в JPEG заданного качества
+     *
+     * @param image       изображение
+     * @param jpegQuality качество JPEG от 0 до 1
+     * @return закодированное изображение
+     * @throws IOException при ошибке кодирования
+     */
+    public static Encoded encode(BufferedImage image, float jpegQuality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (image.getColorModel().hasAlpha()) {
+            ImageIO.write(image, "png", out);
+            return new Encoded(out.toByteArray(), MediaType.IMAGE_PNG_VALUE, image.getWidth(), image.getHeight());
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return new Encoded(out.toByteArray(), MediaType.IMAGE_JPEG_VALUE, image.getWidth(), image.getHeight());
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage resized = new BufferedImage(width, height, image.getType());
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    /**
+     * Повернуть или отразить изображение по EXIF-ориентации и привести его к RGB или ARGB,
+     * так как исходные метаданные в уменьшенные варианты не переносятся
+     */
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swap = orientation >= 5 && orientation <= 8;
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2 -> {
+                transform.scale(-1.0, 1.0);
+                transform.translate(-width, 0);
+            }
+            case 3 -> {
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+            }
+            case 4 -> {
+                transform.scale(1.0, -1.0);
+                transform.translate(0, -height);
+            }
+            case 5 -> {
+                transform.rotate(-Math.PI / 2);
+                transform.scale(-1.0, 1.0);
+            }
+            case 6 -> {
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+            }
+            case 7 -> {
+                transform.scale(-1.0, 1.0);
+                transform.translate(-height, 0);
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+            }
+            case 8 -> {
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+            }
+            default -> {
+            }
+        }
+
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage oriented = new BufferedImage(swap ? height : width, swap ? width : height, type);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    private static int orientation(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        Node root = metadata.getAsTree(JPEG_METADATA_FORMAT);
+        for (Node sequence = root.getFirstChild(); sequence != null; sequence = sequence.getNextSibling()) {
+            if (!"markerSequence".equals(sequence.getNodeName())) {
+                continue;
+            }
+            for (Node marker = sequence.getFirstChild(); marker != null; marker = marker.getNextSibling()) {
+                if ("unknown".equals(marker.getNodeName())
+                        && marker instanceof IIOMetadataNode node
+                        && String.valueOf(APP1_MARKER).equals(node.getAttribute("MarkerTag"))
+                        && node.getUserObject() instanceof byte[] app1) {
+                    return exifOrientation(app1);
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Прочитать тег Orientation из сегмента APP1: "Exif\0\0", заголовок TIFF и первый каталог тегов
+     */
+    private static int exifOrientation(byte[] app1) {
+        if (app1.length < 14 || app1[0] != 'E' || app1[1] != 'x' || app1[2] != 'i' || app1[3] != 'f') {
+            return 1;
+        }
+        int tiff = 6;
+        boolean littleEndian = app1[tiff] == 'I';
+        long ifdOffset = readInt(app1, tiff + 4, littleEndian);
+        if (ifdOffset < 0 || tiff + ifdOffset + 2 > app1.length) {
+            return 1;
+        }
+        int ifd = tiff + (int) ifdOffset;
+        int entries = readShort(app1, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > app1.length) {
+                break;
+            }
+            if (readShort(app1, entry, littleEndian) == ORIENTATION_TAG) {
+                int orientation = readShort(app1, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long readInt(byte[] data, int offset, boolean littleEndian) {
+        long high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        long low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+}
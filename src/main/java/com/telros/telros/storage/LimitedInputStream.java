@@ -0,0 +1,66 @@
+package com.telros.telros.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Поток, прерывающий чтение с ошибкой, если содержимое больше допустимого размера.
+ * Размер проверяется по мере чтения, поэтому слишком большой файл не дочитывается до конца.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long count;
+
+    public LimitedInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset не поддерживается");
+    }
+
+    private void count(long n) throws IOException {
+        count += n;
+        if (count > maxSize) {
+            throw new IOException("Размер файла превышает допустимый: " + maxSize + " байт");
+        }
+    }
+}
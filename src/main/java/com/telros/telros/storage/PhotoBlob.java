@@ -0,0 +1,44 @@
+package com.telros.telros.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Содержимое фотографии, открытое из хранилища
+ */
+public interface PhotoBlob {
+
+    /**
+     * @return SHA-256 хеш содержимого
+     */
+    String digest();
+
+    /**
+     * @return размер содержимого в байтах
+     */
+    long size();
+
+    /**
+     * @return путь к файлу, если содержимое лежит в локальной файловой системе
+     */
+    Optional<Path> path();
+
+    /**
+     * @return поток для чтения содержимого
+     * @throws IOException при ошибке доступа к хранилищу
+     */
+    InputStream openStream() throws IOException;
+
+    /**
+     * Передать часть содержимого в канал, по возможности без копирования через heap
+     *
+     * @param position смещение начала
+     * @param count    количество байт
+     * @param target   канал назначения
+     * @throws IOException при ошибке чтения или записи
+     */
+    void transferTo(long position, long count, WritableByteChannel target) throws IOException;
+}
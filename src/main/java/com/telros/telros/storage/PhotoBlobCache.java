@@ -0,0 +1,330 @@
+package com.telros.telros.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Кэш часто запрашиваемого содержимого фотографий вне heap.
+ * Содержимое лежит в {@link SlabArena} - области direct-памяти, выделенной один раз при старте,
+ * поэтому кэш не создает нагрузки на сборщик мусора. Запись занимает слэбы области, а при вытеснении
+ * слэбы возвращаются в нее из removalListener, как только запись перестают читать.
+ * Размер кэша ограничен photo.cache.max-size, вытеснение - по частоте и давности обращений (W-TinyLFU).
+ * Область больше кэша на одну максимальную запись, чтобы новая запись помещалась до вытеснения старых;
+ * если область все же занята параллельными загрузками, содержимое отдается напрямую из хранилища.
+ * Кэш работает только с хранилищем в базе данных (photo.storage.type=database): он снимает чтение photo_data.
+ * Файлы из локального хранилища отдаются через sendfile из page cache операционной системы,
+ * и копирование в область только добавило бы работы, поэтому при файловом хранилище кэш выключен
+ * и область памяти не выделяется. Содержимое с путем к файлу не кешируется и при хранилище в базе данных.
+ * Содержимое адресуется хешем и не меняется, поэтому запись удаляется только вместе с самим содержимым.
+ * Статистика публикуется в метриках cache.* с тегом cache=photo.cache, в photo.cache.bytes и photo.cache.arena.free.
+ */
+@Component
+@Slf4j
+public class PhotoBlobCache {
+
+    private static final String CACHE_NAME = "photo.cache";
+
+    private final PhotoStorage photoStorage;
+    private final boolean enabled;
+    private final long maxEntrySize;
+    private final SlabArena arena;
+    private final Cache<String, Entry> cache;
+
+    public PhotoBlobCache(PhotoStorage photoStorage,
+                          MeterRegistry meterRegistry,
+                          @Value("${photo.cache.enabled:true}") boolean enabled,
+                          @Value("${photo.storage.type:filesystem}") String storageType,
+                          @Value("${photo.cache.max-size:64MB}") DataSize maxSize,
+                          @Value("${photo.cache.max-entry-size:1MB}") DataSize maxEntrySize,
+                          @Value("${photo.cache.slab-size:64KB}") DataSize slabSize) {
+        this.photoStorage = photoStorage;
+        this.enabled = enabled && "database".equals(storageType);
+        this.maxEntrySize = Math.min(maxEntrySize.toBytes(), maxSize.toBytes());
+        this.arena = this.enabled ? new SlabArena(maxSize.toBytes() + this.maxEntrySize, (int) slabSize.toBytes()) : null;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String digest, Entry entry) -> entry.weight())
+                // Слэбы возвращаются в область в потоке, вызвавшем вытеснение, а не в общем пуле
+                .executor(Runnable::run)
+                .removalListener((String digest, Entry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        entry.release();
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("photo.cache.bytes", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L))
+                        .orElse(0L))
+                .description("Объем содержимого фотографий в кэше, байт")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("photo.cache.arena.free", this, cacheInstance -> cacheInstance.arena != null ? cacheInstance.arena.freeBytes() : 0)
+                .description("Свободный объем области памяти кэша фотографий, байт")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Кэш фотографий: {}, объем {}, максимальный размер записи {}, слэб {}",
+                this.enabled ? "включен" : "выключен (хранилище " + storageType + ")", maxSize, maxEntrySize, slabSize);
+    }
+
+    /**
+     * Открыть содержимое из кэша или из хранилища, сохранив его в кэш.
+     * Одновременные запросы одного и того же содержимого читают его в кэш из хранилища один раз.
+     * Попадания и промахи учитываются только для содержимого, которое может быть закешировано:
+     * файлы, слишком большое и отсутствующее содержимое отдаются из хранилища мимо статистики кэша.
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @return содержимое или пустой Optional, если оно отсутствует
+     * @throws IOException при ошибке доступа к хранилищу
+     */
+    public Optional<PhotoBlob> open(String digest) throws IOException {
+        if (!enabled) {
+            return photoStorage.open(digest);
+        }
+        if (cache.policy().getIfPresentQuietly(digest) != null) {
+            Entry cached = cache.getIfPresent(digest);
+            if (cached != null) {
+                return Optional.of(new ArenaBlob(digest, cached));
+            }
+        }
+
+        Optional<PhotoBlob> blob = photoStorage.open(digest);
+        if (blob.isEmpty() || blob.get().path().isPresent() || blob.get().size() > maxEntrySize) {
+            return blob;
+        }
+        Entry entry;
+        try {
+            entry = cache.get(digest, key -> {
+                try {
+                    return load(blob.get());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // Если в области нет места, содержимое отдается напрямую из хранилища
+        return entry != null ? Optional.of(new ArenaBlob(digest, entry)) : blob;
+    }
+
+    /**
+     * Удалить содержимое из кэша
+     *
+     * @param digest SHA-256 хеш содержимого
+     */
+    public void invalidate(String digest) {
+        cache.invalidate(digest);
+    }
+
+    /**
+     * Скопировать содержимое в слэбы области
+     *
+     * @return запись или null, если в области нет места
+     */
+    private Entry load(PhotoBlob blob) throws IOException {
+        int[] slabs = arena.allocate(blob.size());
+        if (slabs == null) {
+            log.debug("Нет свободного места в области кэша для содержимого {} ({} байт)", blob.digest(), blob.size());
+            return null;
+        }
+        Entry entry = new Entry(slabs, blob.size());
+        try (InputStream stream = blob.openStream()) {
+            byte[] chunk = new byte[Math.min(arena.slabSize(), 8192)];
+            long copied = 0;
+            for (int slab : slabs) {
+                ByteBuffer target = arena.slab(slab);
+                while (target.hasRemaining() && copied < blob.size()) {
+                    int n = stream.read(chunk, 0, (int) Math.min(chunk.length, Math.min(target.remaining(), blob.size() - copied)));
+                    if (n < 0) {
+                        throw new IOException("Содержимое " + blob.digest() + " прочитано не полностью");
+                    }
+                    target.put(chunk, 0, n);
+                    copied += n;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            entry.release();
+            throw e;
+        }
+        return entry;
+    }
+
+    /**
+     * Запись кэша: занятые слэбы и счетчик ссылок. Одну ссылку держит сам кэш, остальные - открытые чтения.
+     * Слэбы возвращаются в область, когда отпущена последняя ссылка.
+     */
+    private final class Entry {
+
+        private final int[] slabs;
+        private final long size;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Entry(int[] slabs, long size) {
+            this.slabs = slabs;
+            this.size = size;
+        }
+
+        private int weight() {
+            return slabs.length * arena.slabSize();
+        }
+
+        /**
+         * @return false, если запись уже вытеснена и ее слэбы возвращены в область
+         */
+        private boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                arena.release(slabs);
+            }
+        }
+
+        /**
+         * Передать часть содержимого в канал
+         */
+        private void write(long position, long count, WritableByteChannel target) throws IOException {
+            int slabSize = arena.slabSize();
+            long end = position + count;
+            while (position < end) {
+                int offset = (int) (position % slabSize);
+                int length = (int) Math.min(slabSize - offset, end - position);
+                ByteBuffer view = arena.slab(slabs[(int) (position / slabSize)]);
+                view.position(offset).limit(offset + length);
+                while (view.hasRemaining()) {
+                    target.write(view);
+                }
+                position += length;
+            }
+        }
+
+        /**
+         * Прочитать часть содержимого в массив
+         */
+        private int read(long position, byte[] b, int off, int len) {
+            if (position >= size) {
+                return -1;
+            }
+            int slabSize = arena.slabSize();
+            int offset = (int) (position % slabSize);
+            int length = (int) Math.min(Math.min(len, slabSize - offset), size - position);
+            arena.slab(slabs[(int) (position / slabSize)]).get(offset, b, off, length);
+            return length;
+        }
+    }
+
+    /**
+     * Содержимое, лежащее в кэше. На время чтения запись удерживается ссылкой, чтобы ее слэбы
+     * не были отданы другому содержимому. Если запись успели вытеснить, содержимое читается из хранилища.
+     */
+    private final class ArenaBlob implements PhotoBlob {
+
+        private final String digest;
+        private final Entry entry;
+
+        private ArenaBlob(String digest, Entry entry) {
+            this.digest = digest;
+            this.entry = entry;
+        }
+
+        @Override
+        public String digest() {
+            return digest;
+        }
+
+        @Override
+        public long size() {
+            return entry.size;
+        }
+
+        @Override
+        public Optional<Path> path() {
+            return Optional.empty();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            if (!entry.retain()) {
+                return fromStorage().openStream();
+            }
+            return new InputStream() {
+                private final AtomicBoolean closed = new AtomicBoolean();
+                private long position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (closed.get()) {
+                        throw new IOException("Поток закрыт");
+                    }
+                    if (len == 0) {
+                        return 0;
+                    }
+                    int n = entry.read(position, b, off, len);
+                    if (n > 0) {
+                        position += n;
+                    }
+                    return n;
+                }
+
+                @Override
+                public void close() {
+                    if (closed.compareAndSet(false, true)) {
+                        entry.release();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            if (!entry.retain()) {
+                fromStorage().transferTo(position, count, target);
+                return;
+            }
+            try {
+                entry.write(position, count, target);
+            } finally {
+                entry.release();
+            }
+        }
+
+        private PhotoBlob fromStorage() throws IOException {
+            return photoStorage.open(digest)
+                    .orElseThrow(() -> new IOException("Содержимое " + digest + " отсутствует в хранилище"));
+        }
+    }
+}
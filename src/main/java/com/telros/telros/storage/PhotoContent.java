@@ -0,0 +1,13 @@
+package com.telros.telros.storage;
+
+/**
+ * Метаданные содержимого фотографии для отдачи клиенту.
+ * Определяются без обращения к хранилищу, поэтому по ним проверяются условные запросы до чтения содержимого.
+ *
+ * @param digest       SHA-256 хеш отдаваемого содержимого
+ * @param contentType  MIME-тип содержимого
+ * @param provisional  true, если запрошенный вариант еще не построен и вместо него отдается исходная фотография
+ * @param lastModified время построения варианта в миллисекундах или -1 для исходной фотографии
+ */
+public record PhotoContent(String digest, String contentType, boolean provisional, long lastModified) {
+}
@@ -0,0 +1,46 @@
+package com.telros.telros.storage;
+
+import com.telros.telros.event.PhotoContentReleasedEvent;
+import com.telros.telros.model.PhotoVariant;
+import com.telros.telros.repository.PhotoVariantRepository;
+import com.telros.telros.repository.UserPhotoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Удаляет варианты фотографии, на содержимое которой больше не ссылается ни одна запись.
+ * Само содержимое фотографии и вариантов удаляет {@link PhotoContentSweeper}: сразу удалять его нельзя,
+ * потому что параллельная загрузка того же содержимого может еще не зафиксировать ссылку на него.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PhotoContentCleaner {
+
+    private final UserPhotoRepository userPhotoRepository;
+    private final PhotoVariantRepository photoVariantRepository;
+
+    /**
+     * Удалить варианты освобожденного содержимого после фиксации транзакции.
+     * Транзакция, опубликовавшая событие, уже зафиксирована, поэтому удаление вариантов идет в новой.
+     *
+     * @param event событие освобождения содержимого
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onReleased(PhotoContentReleasedEvent event) {
+        // Одинаковое содержимое хранится один раз, поэтому на него могут ссылаться другие фотографии
+        if (userPhotoRepository.existsByContentDigest(event.digest())) {
+            return;
+        }
+        List<PhotoVariant> variants = photoVariantRepository.findBySourceDigest(event.digest());
+        photoVariantRepository.deleteAll(variants);
+        log.debug("Удалено вариантов освобожденного содержимого {}: {}", event.digest(), variants.size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.telros.telros.storage;
+
+import com.telros.telros.repository.PhotoVariantRepository;
+import com.telros.telros.repository.UserPhotoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Периодическая очистка хранилища от содержимого, на которое не ссылается ни одна фотография или вариант.
+ * Ссылка на только что сохраненное содержимое появляется в базе данных лишь после фиксации транзакции,
+ * поэтому удаляется только содержимое старше photo.storage.gc.grace-period: повторное сохранение того же
+ * содержимого обновляет момент его сохранения. Так же собирается содержимое из откаченных транзакций.
+ */
+@Component
+@Slf4j
+public class PhotoContentSweeper {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final PhotoStorage photoStorage;
+    private final PhotoBlobCache photoBlobCache;
+    private final UserPhotoRepository userPhotoRepository;
+    private final PhotoVariantRepository photoVariantRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration gracePeriod;
+
+    public PhotoContentSweeper(PhotoStorage photoStorage,
+                               PhotoBlobCache photoBlobCache,
+                               UserPhotoRepository userPhotoRepository,
+                               PhotoVariantRepository photoVariantRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${photo.storage.gc.enabled:true}") boolean enabled,
+                               @Value("${photo.storage.gc.grace-period:1h}") Duration gracePeriod) {
+        this.photoStorage = photoStorage;
+        this.photoBlobCache = photoBlobCache;
+        this.userPhotoRepository = userPhotoRepository;
+        this.photoVariantRepository = photoVariantRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * Удалить брошенное содержимое старше photo.storage.gc.grace-period
+     */
+    @Scheduled(initialDelayString = "${photo.storage.gc.initial-delay:5m}",
+            fixedDelayString = "${photo.storage.gc.interval:1h}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            collect(Instant.now().minus(gracePeriod));
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка при очистке хранилища фотографий: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Удалить варианты и содержимое, сохраненные раньше указанного момента, на которые нет ссылок
+     *
+     * @param before момент сохранения
+     * @return количество удаленных единиц содержимого
+     * @throws IOException при ошибке доступа к хранилищу
+     */
+    public int collect(Instant before) throws IOException {
+        Integer orphans = transactionTemplate.execute(status ->
+                photoVariantRepository.deleteOrphansCreatedBefore(Timestamp.from(before)));
+        if (orphans != null && orphans > 0) {
+            log.info("Удалено вариантов брошенных фотографий: {}", orphans);
+        }
+
+        List<String> candidates = new ArrayList<>();
+        photoStorage.forEachStoredBefore(before, candidates::add);
+        int removed = 0;
+        for (int from = 0; from < candidates.size(); from += BATCH_SIZE) {
+            List<String> batch = candidates.subList(from, Math.min(from + BATCH_SIZE, candidates.size()));
+            Set<String> referenced = new HashSet<>(userPhotoRepository.findReferencedDigests(batch));
+            referenced.addAll(photoVariantRepository.findReferencedDigests(batch));
+            for (String digest : batch) {
+                if (referenced.contains(digest)) {
+                    continue;
+                }
+                photoBlobCache.invalidate(digest);
+                try {
+                    if (photoStorage.deleteIfStoredBefore(digest, before)) {
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    log.error("Не удалось удалить содержимое фотографии {}: {}", digest, e.getMessage());
+                }
+            }
+        }
+        if (removed > 0) {
+            log.info("Удалено содержимое фотографий без ссылок: {}", removed);
+        }
+        return removed;
+    }
+}
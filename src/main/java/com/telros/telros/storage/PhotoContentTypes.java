@@ -0,0 +1,63 @@
+package com.telros.telros.storage;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Определение типа содержимого фотографии по сигнатуре в начале файла.
+ * Тип, присланный клиентом, не используется: он может не соответствовать содержимому.
+ */
+public final class PhotoContentTypes {
+
+    /**
+     * Количество начальных байт, достаточное для распознавания всех поддерживаемых форматов
+     */
+    public static final int SIGNATURE_LENGTH = 12;
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] GIF87 = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89 = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+    private static final byte[] BMP = {'B', 'M'};
+
+    private PhotoContentTypes() {
+    }
+
+    /**
+     * Определить тип содержимого
+     *
+     * @param head начальные байты файла
+     * @return MIME-тип изображения или application/octet-stream, если формат не распознан
+     */
+    public static String detect(byte[] head) {
+        if (startsWith(head, 0, JPEG)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(head, 0, PNG)) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(head, 0, GIF87) || startsWith(head, 0, GIF89)) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        if (startsWith(head, 0, RIFF) && startsWith(head, 8, WEBP)) {
+            return "image/webp";
+        }
+        if (startsWith(head, 0, BMP)) {
+            return "image/bmp";
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] signature) {
+        if (data.length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (data[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
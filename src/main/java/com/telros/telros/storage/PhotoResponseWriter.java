@@ -0,0 +1,103 @@
+package com.telros.telros.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Отправка содержимого фотографии в HTTP-ответ без загрузки в heap.
+ * Если контейнер поддерживает sendfile (Tomcat NIO), файл передается ядром напрямую в сокет
+ * после завершения обработчика; иначе содержимое передается через {@link java.nio.channels.FileChannel#transferTo}.
+ * Поддерживается один диапазон байт из заголовка Range с учетом If-Range по ETag; на HEAD содержимое не читается.
+ */
+@Component
+public class PhotoResponseWriter {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Записать содержимое в ответ. Заголовки, кроме Content-Length, Content-Range и Accept-Ranges,
+     * должны быть выставлены заранее, условные запросы If-None-Match и If-Modified-Since - уже обработаны.
+     *
+     * @param blob         содержимое фотографии
+     * @param eTag         ETag содержимого
+     * @param request      HTTP-запрос
+     * @param response     HTTP-ответ
+     * @throws IOException при ошибке чтения или записи
+     */
+    public void write(PhotoBlob blob, String eTag, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = blob.size();
+        long start = 0;
+        long length = size;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        HttpRange range = requestedRange(request, eTag);
+        if (range != null) {
+            start = range.getRangeStart(size);
+            if (size == 0 || start >= size) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setContentLength(0);
+                return;
+            }
+            long end = range.getRangeEnd(size);
+            length = end - start + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        response.setContentLengthLong(length);
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+
+        Optional<Path> path = blob.path();
+        if (path.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, path.get().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        blob.transferTo(start, length, Channels.newChannel(response.getOutputStream()));
+        response.flushBuffer();
+    }
+
+    /**
+     * Определить запрошенный диапазон. Некорректный заголовок Range, несколько диапазонов
+     * и несовпадение If-Range приводят к отдаче всего содержимого.
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String eTag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request, eTag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String eTag) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        // Дата изменения с точностью до секунды не является строгим валидатором: содержимое, замененное
+        // в ту же секунду, совпало бы по дате, и клиент склеил бы части разных файлов.
+        // Поэтому диапазон отдается только по совпадению ETag, а при дате клиент получает содержимое целиком
+        return ifRange.startsWith("\"") && ifRange.equals(eTag);
+    }
+}
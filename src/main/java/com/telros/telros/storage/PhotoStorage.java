@@ -0,0 +1,90 @@
+package com.telros.telros.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище содержимого фотографий пользователей.
+ * Содержимое адресуется SHA-256 хешем, поэтому одинаковые файлы хранятся в единственном экземпляре,
+ * а в базе данных остаются только метаданные и хеш.
+ * Каждое сохранение, в том числе повторное, обновляет момент сохранения содержимого:
+ * по нему {@link PhotoContentSweeper} отличает недавно сохраненное содержимое, ссылка на которое
+ * еще не зафиксирована в базе данных, от действительно брошенного.
+ */
+public interface PhotoStorage {
+
+    /**
+     * Сохранить содержимое из потока
+     *
+     * @param content поток с содержимым, закрывается вызывающей стороной
+     * @return хеш и размер сохраненного содержимого
+     * @throws IOException при ошибке чтения или записи
+     */
+    StoredBlob store(InputStream content) throws IOException;
+
+    /**
+     * Сохранить содержимое из готового файла. После вызова файл принадлежит хранилищу:
+     * он переносится на место без копирования, если хранилище это поддерживает, или удаляется.
+     *
+     * @param file файл с содержимым
+     * @return хеш и размер сохраненного содержимого
+     * @throws IOException при ошибке чтения или записи
+     */
+    default StoredBlob store(Path file) throws IOException {
+        try (InputStream content = Files.newInputStream(file)) {
+            return store(content);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Открыть сохраненное содержимое
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @return содержимое или пустой Optional, если оно отсутствует
+     * @throws IOException при ошибке доступа к хранилищу
+     */
+    Optional<PhotoBlob> open(String digest) throws IOException;
+
+    /**
+     * Проверить наличие содержимого
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @return true, если содержимое сохранено
+     */
+    boolean exists(String digest);
+
+    /**
+     * Удалить содержимое. Отсутствие содержимого ошибкой не считается.
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @throws IOException при ошибке доступа к хранилищу
+     */
+    void delete(String digest) throws IOException;
+
+    /**
+     * Перебрать хеши содержимого, сохраненного раньше указанного момента
+     *
+     * @param before момент сохранения
+     * @param action действие для каждого хеша
+     * @throws IOException при ошибке доступа к хранилищу
+     */
+    void forEachStoredBefore(Instant before, Consumer<String> action) throws IOException;
+
+    /**
+     * Удалить содержимое, только если оно сохранено раньше указанного момента
+     * и с тех пор не сохранялось повторно
+     *
+     * @param digest SHA-256 хеш содержимого
+     * @param before момент сохранения
+     * @return true, если содержимое удалено
+     * @throws IOException при ошибке доступа к хранилищу
+     */
+    boolean deleteIfStoredBefore(String digest, Instant before) throws IOException;
+}
@@ -0,0 +1,78 @@
+package com.telros.telros.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Фоновый перенос содержимого фотографий из таблицы photo_data в файловое хранилище.
+ * За один запуск переносится ограниченное количество записей, каждая запись удаляется из таблицы
+ * только после того, как файл записан и его хеш проверен, поэтому перенос может прерываться в любой момент.
+ * Записи обходятся по возрастанию хеша с курсора после последней обработанной, поэтому запись,
+ * которую не удается перенести, не останавливает перенос остальных и повторяется на следующем круге.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "photo.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class PhotoStorageMigrationJob {
+
+    private final FilesystemPhotoStorage filesystemStorage;
+    private final DatabasePhotoStorage databaseStorage;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Counter failed;
+    // Хеш последней обработанной записи; null - следующий круг начинается с первой
+    private String cursor;
+
+    public PhotoStorageMigrationJob(FilesystemPhotoStorage filesystemStorage,
+                                    DatabasePhotoStorage databaseStorage,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${photo.storage.migration.enabled:true}") boolean enabled,
+                                    @Value("${photo.storage.migration.batch-size:100}") int batchSize) {
+        this.filesystemStorage = filesystemStorage;
+        this.databaseStorage = databaseStorage;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.failed = Counter.builder("photo.storage.migration.failed")
+                .description("Количество ошибок переноса содержимого в файловое хранилище")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Перенести очередную порцию содержимого
+     */
+    @Scheduled(initialDelayString = "${photo.storage.migration.initial-delay:30s}",
+            fixedDelayString = "${photo.storage.migration.interval:1m}")
+    public void migrateBatch() {
+        if (!enabled) {
+            return;
+        }
+        List<String> digests = databaseStorage.findDigests(cursor, batchSize);
+        if (digests.isEmpty()) {
+            // Круг завершен: записи, которые не удалось перенести, повторяются со следующего запуска
+            cursor = null;
+            return;
+        }
+        cursor = digests.get(digests.size() - 1);
+
+        int migrated = 0;
+        for (String digest : digests) {
+            try {
+                if (filesystemStorage.migrateFromDatabase(digest)) {
+                    migrated++;
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.increment();
+                log.error("Не удалось перенести содержимое {} в файловое хранилище: {}", digest, e.getMessage());
+            }
+        }
+        log.info("Перенесено в файловое хранилище фотографий: {} из {}", migrated, digests.size());
+    }
+}
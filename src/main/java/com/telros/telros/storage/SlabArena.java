@@ -0,0 +1,104 @@
+package com.telros.telros.storage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Область памяти вне heap, выделенная один раз при старте и разбитая на слэбы одинакового размера.
+ * Содержимое занимает несколько слэбов, не обязательно подряд идущих. Освобожденные слэбы сразу
+ * возвращаются в список свободных и используются повторно, поэтому расход памяти не зависит от сборки мусора.
+ */
+final class SlabArena {
+
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final BlockingQueue<Integer> free;
+
+    /**
+     * @param capacity общий объем области, байт
+     * @param slabSize размер слэба, байт
+     */
+    SlabArena(long capacity, int slabSize) {
+        long count = (capacity + slabSize - 1) / slabSize;
+        if ((long) slabSize * count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Объем области памяти не может превышать " + Integer.MAX_VALUE + " байт");
+        }
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) count];
+        this.free = new ArrayBlockingQueue<>(slabs.length);
+        ByteBuffer memory = ByteBuffer.allocateDirect(slabSize * slabs.length);
+        for (int i = 0; i < slabs.length; i++) {
+            slabs[i] = memory.slice(i * slabSize, slabSize);
+            free.add(i);
+        }
+    }
+
+    /**
+     * Занять слэбы под содержимое заданного размера
+     *
+     * @param bytes размер содержимого
+     * @return номера слэбов или null, если свободных слэбов не хватает
+     */
+    int[] allocate(long bytes) {
+        int[] allocated = new int[slabsFor(bytes)];
+        for (int i = 0; i < allocated.length; i++) {
+            Integer slab = free.poll();
+            if (slab == null) {
+                release(allocated, i);
+                return null;
+            }
+            allocated[i] = slab;
+        }
+        return allocated;
+    }
+
+    /**
+     * Вернуть слэбы в список свободных
+     *
+     * @param allocated номера слэбов
+     */
+    void release(int[] allocated) {
+        release(allocated, allocated.length);
+    }
+
+    /**
+     * @param slab номер слэба
+     * @return собственный буфер слэба с независимой позицией
+     */
+    ByteBuffer slab(int slab) {
+        return slabs[slab].duplicate();
+    }
+
+    /**
+     * @param bytes размер содержимого
+     * @return количество слэбов, которое оно займет
+     */
+    int slabsFor(long bytes) {
+        return (int) Math.max(1, (bytes + slabSize - 1) / slabSize);
+    }
+
+    int slabSize() {
+        return slabSize;
+    }
+
+    /**
+     * @return общий объем области, байт
+     */
+    long capacity() {
+        return (long) slabSize * slabs.length;
+    }
+
+    /**
+     * @return свободный объем, байт
+     */
+    long freeBytes() {
+        return (long) slabSize * free.size();
+    }
+
+    private void release(int[] allocated, int count) {
+        for (int i = 0; i < count; i++) {
+            free.add(allocated[i]);
+        }
+    }
+}
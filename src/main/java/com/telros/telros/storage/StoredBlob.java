@@ -0,0 +1,10 @@
+package com.telros.telros.storage;
+
+/**
+ * Результат сохранения содержимого в хранилище фотографий
+ *
+ * @param digest SHA-256 хеш содержимого в шестнадцатеричном виде
+ * @param size   размер содержимого в байтах
+ */
+public record StoredBlob(String digest, long size) {
+}
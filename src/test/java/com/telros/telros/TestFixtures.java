@@ -0,0 +1,30 @@
+package com.telros.telros;
+
+import com.telros.telros.dto.request.SignupRequest;
+
+/**
+ * Общие тестовые данные
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Создать запрос регистрации пользователя с ролью по умолчанию
+     *
+     * @param username имя пользователя
+     * @param email    email
+     * @param password пароль
+     * @return запрос регистрации
+     */
+    public static SignupRequest signupRequest(String username, String email, String password) {
+        SignupRequest request = new SignupRequest();
+        request.setUsername(username);
+        request.setEmail(email);
+        request.setPassword(password);
+        request.setFirstName("Test");
+        request.setLastName("User");
+        return request;
+    }
+}
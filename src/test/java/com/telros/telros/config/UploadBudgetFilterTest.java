@@ -0,0 +1,164 @@
+package com.telros.telros.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тест бюджета одновременных загрузок фотографий. Бюджет равен одной загрузке, поэтому
+ * пока первая загрузка не завершена, вторая ждет photo.upload.budget.max-wait и отклоняется.
+ */
+public class UploadBudgetFilterTest {
+
+    private static final byte[] UPLOAD = new byte[1024];
+
+    private final UploadStubController controller = new UploadStubController();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private MeterRegistry meterRegistry;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        UploadBudgetFilter filter = new UploadBudgetFilter(new ObjectMapper(), meterRegistry,
+                DataSize.ofKilobytes(1), Duration.ofMillis(100), DataSize.ofMegabytes(10));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .addFilters(filter)
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        controller.release.countDown();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Тест исчерпания бюджета: вторая загрузка получает 503 с Retry-After, после завершения первой - проходит
+     */
+    @Test
+    public void testRejectsUploadWhenBudgetExhausted() throws Exception {
+        Future<MvcResult> blocked = startBlockingUpload();
+
+        mockMvc.perform(post("/api/users/1/photo").content(UPLOAD))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(content().string(containsString("Сервис перегружен")));
+        mockMvc.perform(put("/api/users/me/photo/uploads/abc").content(UPLOAD))
+                .andExpect(status().isServiceUnavailable());
+        assertEquals(2, meterRegistry.get("photo.upload.budget.rejected").counter().count());
+
+        controller.release.countDown();
+        assertEquals(200, blocked.get(5, TimeUnit.SECONDS).getResponse().getStatus());
+        mockMvc.perform(post("/api/users/1/photo").content(UPLOAD))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Тест освобождения бюджета после загрузки, завершившейся ошибкой
+     */
+    @Test
+    public void testReleasesBudgetAfterFailedUpload() throws Exception {
+        assertThrows(Exception.class, () -> mockMvc.perform(post("/api/users/1/photo")
+                .param("mode", "fail")
+                .content(UPLOAD)));
+
+        mockMvc.perform(post("/api/users/1/photo").content(UPLOAD))
+                .andExpect(status().isOk());
+        assertEquals(0, meterRegistry.get("photo.upload.budget.in-flight").gauge().value());
+    }
+
+    /**
+     * Тест запросов вне бюджета: чтение фотографии и другие пути не ограничиваются, даже когда бюджет занят
+     */
+    @Test
+    public void testDoesNotThrottleOtherRequests() throws Exception {
+        Future<MvcResult> blocked = startBlockingUpload();
+
+        mockMvc.perform(get("/api/users/1/photo"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/users/1/other").content(UPLOAD))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/users/me/photo/uploads").content(UPLOAD))
+                .andExpect(status().isOk());
+        assertEquals(0, meterRegistry.get("photo.upload.budget.rejected").counter().count());
+
+        controller.release.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Запустить загрузку, которая занимает весь бюджет до release
+     */
+    private Future<MvcResult> startBlockingUpload() throws InterruptedException {
+        Future<MvcResult> blocked = executor.submit(() -> mockMvc.perform(post("/api/users/1/photo")
+                .param("mode", "block")
+                .content(UPLOAD)).andReturn());
+        assertTrue(controller.entered.await(5, TimeUnit.SECONDS));
+        return blocked;
+    }
+
+    /**
+     * Контроллер-заглушка с путями загрузки фотографий
+     */
+    @RestController
+    static class UploadStubController {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @PostMapping({"/api/users/{id}/photo", "/api/users/{id}/other", "/api/users/me/photo/uploads"})
+        public String upload(@PathVariable(required = false) String id,
+                             @RequestParam(defaultValue = "ok") String mode) throws InterruptedException {
+            if ("block".equals(mode)) {
+                entered.countDown();
+                release.await();
+            } else if ("fail".equals(mode)) {
+                throw new IllegalStateException("Ошибка загрузки");
+            }
+            return "ok";
+        }
+
+        @PutMapping("/api/users/me/photo/uploads/{id}")
+        public String uploadChunk(@PathVariable String id) {
+            return "ok";
+        }
+
+        @GetMapping("/api/users/{id}/photo")
+        public String download(@PathVariable String id) {
+            return "ok";
+        }
+    }
+}
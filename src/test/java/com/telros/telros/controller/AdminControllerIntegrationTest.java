@@ -0,0 +1,144 @@
+package com.telros.telros.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telros.telros.dto.request.LoginRequest;
+import com.telros.telros.model.ERole;
+import com.telros.telros.model.Role;
+import com.telros.telros.model.User;
+import com.telros.telros.repository.RoleRepository;
+import com.telros.telros.repository.UserDetailsRepository;
+import com.telros.telros.repository.UserRepository;
+import com.telros.telros.service.RoleRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Интеграционный тест для контроллера административных операций
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AdminControllerIntegrationTest {
+
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final UserDetailsRepository userDetailsRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final RoleRegistry roleRegistry;
+
+    @Autowired
+    public AdminControllerIntegrationTest(MockMvc mockMvc,
+                                          ObjectMapper objectMapper,
+                                          UserRepository userRepository,
+                                          RoleRepository roleRepository,
+                                          UserDetailsRepository userDetailsRepository,
+                                          PasswordEncoder passwordEncoder,
+                                          RoleRegistry roleRegistry) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.userDetailsRepository = userDetailsRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.roleRegistry = roleRegistry;
+    }
+
+    private String adminToken;
+    private String userToken;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // Очистка базы данных перед каждым тестом
+        userDetailsRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+
+        // Создание ролей
+        Role userRole = roleRepository.save(new Role(ERole.ROLE_USER));
+        Role adminRole = roleRepository.save(new Role(ERole.ROLE_ADMIN));
+        roleRegistry.refresh();
+
+        createUser("admin", "admin@example.com", "admin", adminRole);
+        createUser("user", "user@example.com", "password", userRole);
+
+        // Получение токенов для тестирования
+        adminToken = getAuthToken("admin", "admin");
+        userToken = getAuthToken("user", "password");
+    }
+
+    private void createUser(String username, String email, String password, Role role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode(password));
+        user.setRoles(new HashSet<>(Set.of(role)));
+        userRepository.save(user);
+    }
+
+    /**
+     * Получение токена аутентификации
+     */
+    private String getAuthToken(String username, String password) throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUsername(username);
+        loginRequest.setPassword(password);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String contentAsString = result.getResponse().getContentAsString();
+        return "Bearer " + objectMapper.readTree(contentAsString).get("token").asText();
+    }
+
+    /**
+     * Тест загрузки реестра ролей при старте: роли доступны без вызова из инициализатора базы данных
+     */
+    @Test
+    public void testRoleRegistryLoadedOnStartup() {
+        userDetailsRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+        roleRegistry.init();
+
+        for (ERole name : ERole.values()) {
+            assertTrue(roleRegistry.contains(name), name.name());
+            assertEquals(name, roleRegistry.get(name).getName());
+        }
+        assertEquals(ERole.values().length, roleRepository.count());
+    }
+
+    /**
+     * Тест обновления реестра ролей (только для администратора)
+     */
+    @Test
+    public void testRefreshRoleRegistry() throws Exception {
+        mockMvc.perform(post("/api/admin/roles/refresh")
+                .header("Authorization", userToken))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(post("/api/admin/roles/refresh")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+    }
+}
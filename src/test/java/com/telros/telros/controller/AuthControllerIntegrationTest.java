@@ -3,27 +3,51 @@ package com.telros.telros.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.telros.telros.model.ERole;
 import com.telros.telros.model.Role;
+import com.telros.telros.model.User;
 import com.telros.telros.dto.request.LoginRequest;
 import com.telros.telros.dto.request.SignupRequest;
 import com.telros.telros.repository.RoleRepository;
 import com.telros.telros.repository.UserRepository;
+import com.telros.telros.security.CachingUserDetailsService;
+import com.telros.telros.security.jwt.JwtUtils;
+import com.telros.telros.service.RoleRegistry;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import static com.telros.telros.TestFixtures.signupRequest;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -40,16 +64,25 @@ public class AuthControllerIntegrationTest {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final RoleRegistry roleRegistry;
+    private final String jwtSecret;
+
+    // Обертка над сервисом загрузки пользователей, чтобы проверить отсутствие обращений к нему
+    @MockitoSpyBean
+    private CachingUserDetailsService userDetailsService;
 
     @Autowired
     public AuthControllerIntegrationTest(MockMvc mockMvc, ObjectMapper objectMapper,
                                          UserRepository userRepository, RoleRepository roleRepository,
-                                         PasswordEncoder passwordEncoder) {
+                                         PasswordEncoder passwordEncoder, RoleRegistry roleRegistry,
+                                         @Value("${jwt.secret}") String jwtSecret) {
         this.mockMvc = mockMvc;
         this.objectMapper = objectMapper;
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.roleRegistry = roleRegistry;
+        this.jwtSecret = jwtSecret;
     }
 
     @BeforeEach
@@ -66,6 +99,7 @@ public class AuthControllerIntegrationTest {
         Role adminRole = new Role();
         adminRole.setName(ERole.ROLE_ADMIN);
         roleRepository.save(adminRole);
+        roleRegistry.refresh();
     }
 
     /**
@@ -162,4 +196,141 @@ public class AuthControllerIntegrationTest {
                 .andExpect(jsonPath("$.username", is("loginuser")))
                 .andExpect(jsonPath("$.email", is("login@example.com")));
     }
-}
\ No newline at end of file
+
+    /**
+     * Тест блокировки входа после серии неудачных попыток
+     */
+    @Test
+    public void testSigninBlockedAfterRepeatedFailures() throws Exception {
+        SignupRequest signupRequest = new SignupRequest();
+        signupRequest.setUsername("lockeduser");
+        signupRequest.setEmail("locked@example.com");
+        signupRequest.setPassword("password");
+        signupRequest.setFirstName("testuser");
+        signupRequest.setLastName("testuser");
+
+        mockMvc.perform(post("/api/auth/signup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(signupRequest)));
+
+        LoginRequest wrongPassword = new LoginRequest();
+        wrongPassword.setUsername("lockeduser");
+        wrongPassword.setPassword("wrong-password");
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/api/auth/signin")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(wrongPassword)));
+        }
+
+        // Даже верный пароль отклоняется до истечения окна блокировки
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUsername("lockeduser");
+        loginRequest.setPassword("password");
+
+        mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    /**
+     * Тест аутентификации по claims токена: пользователь не загружается из базы данных,
+     * а роли берутся из токена
+     */
+    @Test
+    public void testClaimsTokenAuthenticatesWithoutUserLookup() throws Exception {
+        String token = signupAndSignin("claimsuser", "claims@example.com");
+        clearInvocations(userDetailsService);
+
+        mockMvc.perform(get("/api/users/me")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is("Test")));
+        mockMvc.perform(get("/api/users")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    /**
+     * Тест отклонения токена с измененными claims и токена с истекшим сроком действия
+     */
+    @Test
+    public void testTamperedAndExpiredTokensRejected() throws Exception {
+        String token = signupAndSignin("tampereduser", "tampered@example.com");
+
+        // Роль администратора, дописанная в claims без новой подписи
+        String[] parts = token.split("\\.");
+        String claims = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("ROLE_USER", "ROLE_ADMIN");
+        String tampered = parts[0] + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.getBytes(StandardCharsets.UTF_8)) + "." + parts[2];
+        mockMvc.perform(get("/api/users")
+                .header("Authorization", "Bearer " + tampered))
+                .andExpect(status().isUnauthorized());
+
+        // Подпись верна, но срок действия истек
+        String expired = Jwts.builder()
+                .setSubject("tampereduser")
+                .claim(JwtUtils.CLAIM_USER_ID, 1L)
+                .claim(JwtUtils.CLAIM_ROLES, List.of("ROLE_USER"))
+                .setIssuedAt(new Date(System.currentTimeMillis() - 120_000))
+                .setExpiration(new Date(System.currentTimeMillis() - 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret)), SignatureAlgorithm.HS256)
+                .compact();
+        mockMvc.perform(get("/api/users/me")
+                .header("Authorization", "Bearer " + expired))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/api/users/me")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Тест перехеширования при входе: хеш с устаревшей стоимостью BCrypt заменяется хешем с текущей
+     */
+    @Test
+    public void testRehashOnLogin() throws Exception {
+        signupAndSignin("rehashuser", "rehash@example.com");
+        User user = userRepository.findByUsername("rehashuser").orElseThrow();
+        user.setPassword(new BCryptPasswordEncoder(4).encode("password"));
+        userRepository.save(user);
+        userDetailsService.evict("rehashuser");
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUsername("rehashuser");
+        loginRequest.setPassword("password");
+        mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk());
+
+        String rehashed = userRepository.findByUsername("rehashuser").orElseThrow().getPassword();
+        assertTrue(rehashed.startsWith("$2a$05$"));
+        assertTrue(passwordEncoder.matches("password", rehashed));
+    }
+
+    /**
+     * Зарегистрировать пользователя с ролью user и получить для него токен
+     */
+    private String signupAndSignin(String username, String email) throws Exception {
+        mockMvc.perform(post("/api/auth/signup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(signupRequest(username, email, "password"))))
+                .andExpect(status().isOk());
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUsername(username);
+        loginRequest.setPassword("password");
+        MvcResult result = mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("token").asText();
+    }
+}
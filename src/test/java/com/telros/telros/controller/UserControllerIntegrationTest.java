@@ -1,21 +1,35 @@
 package com.telros.telros.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.telros.telros.model.ERole;
 import com.telros.telros.model.Role;
 import com.telros.telros.model.User;
 import com.telros.telros.model.UserDetails;
+import com.telros.telros.model.UserPhoto;
 import com.telros.telros.dto.request.LoginRequest;
+import com.telros.telros.dto.request.SignupRequest;
 import com.telros.telros.dto.request.UserDetailsRequest;
+import com.telros.telros.model.PhotoVariant;
+import com.telros.telros.repository.PhotoVariantRepository;
 import com.telros.telros.repository.RoleRepository;
 import com.telros.telros.repository.UserDetailsRepository;
+import com.telros.telros.repository.UserPhotoRepository;
 import com.telros.telros.repository.UserRepository;
+import com.telros.telros.service.RoleRegistry;
+import com.telros.telros.storage.PhotoBlob;
+import com.telros.telros.storage.PhotoContentSweeper;
+import com.telros.telros.storage.PhotoStorage;
+import com.telros.telros.storage.StoredBlob;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
@@ -23,15 +37,45 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import lombok.RequiredArgsConstructor;
 
+import static com.telros.telros.TestFixtures.signupRequest;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -48,6 +92,11 @@ public class UserControllerIntegrationTest {
     private final RoleRepository roleRepository;
     private final UserDetailsRepository userDetailsRepository;
     private final PasswordEncoder passwordEncoder;
+    private final RoleRegistry roleRegistry;
+    private final UserPhotoRepository userPhotoRepository;
+    private final PhotoVariantRepository photoVariantRepository;
+    private final PhotoStorage photoStorage;
+    private final PhotoContentSweeper photoContentSweeper;
 
     @Autowired
     public UserControllerIntegrationTest(MockMvc mockMvc,
@@ -55,13 +104,23 @@ public class UserControllerIntegrationTest {
                                         UserRepository userRepository,
                                         RoleRepository roleRepository,
                                         UserDetailsRepository userDetailsRepository,
-                                        PasswordEncoder passwordEncoder) {
+                                        PasswordEncoder passwordEncoder,
+                                        RoleRegistry roleRegistry,
+                                        UserPhotoRepository userPhotoRepository,
+                                        PhotoVariantRepository photoVariantRepository,
+                                        PhotoStorage photoStorage,
+                                        PhotoContentSweeper photoContentSweeper) {
         this.mockMvc = mockMvc;
         this.objectMapper = objectMapper;
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.userDetailsRepository = userDetailsRepository;
         this.passwordEncoder = passwordEncoder;
+        this.roleRegistry = roleRegistry;
+        this.userPhotoRepository = userPhotoRepository;
+        this.photoVariantRepository = photoVariantRepository;
+        this.photoStorage = photoStorage;
+        this.photoContentSweeper = photoContentSweeper;
     }
 
     private String adminToken;
@@ -85,6 +144,7 @@ public class UserControllerIntegrationTest {
         Role adminRole = new Role();
         adminRole.setName(ERole.ROLE_ADMIN);
         roleRepository.save(adminRole);
+        roleRegistry.refresh();
 
         // Создание администратора
         adminUser = new User();
@@ -159,6 +219,140 @@ public class UserControllerIntegrationTest {
                 .andExpect(status().isForbidden());
     }
 
+    /**
+     * Тест постраничного получения пользователей (только для администратора)
+     */
+    @Test
+    public void testGetUsersPage() throws Exception {
+        MvcResult firstPage = mockMvc.perform(get("/api/users/page")
+                .header("Authorization", adminToken)
+                .param("size", "1")
+                .param("sort", "username")
+                .param("includeTotal", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].username", is("admin")))
+                .andExpect(jsonPath("$.items[0].userDetails.firstName", is("Admin")))
+                .andExpect(jsonPath("$.total", is(2)))
+                .andReturn();
+        String cursor = objectMapper.readTree(firstPage.getResponse().getContentAsString()).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/users/page")
+                .header("Authorization", adminToken)
+                .param("size", "1")
+                .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].username", is("user")))
+                .andExpect(jsonPath("$.nextCursor", nullValue()))
+                .andExpect(jsonPath("$.total", nullValue()));
+
+        mockMvc.perform(get("/api/users/page")
+                .header("Authorization", adminToken)
+                .param("sort", "password"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/users/page")
+                .header("Authorization", userToken))
+                .andExpect(status().isForbidden());
+    }
+
+    /**
+     * Тест пакетного получения пользователей по ID и именам
+     */
+    @Test
+    public void testGetUsersBatch() throws Exception {
+        Long adminDetailsId = adminUserDetails.getId();
+        mockMvc.perform(get("/api/users/batch")
+                .header("Authorization", userToken)
+                .param("ids", adminDetailsId + ",999999")
+                .param("usernames", "user,ghost"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ids['" + adminDetailsId + "'].found", is(true)))
+                .andExpect(jsonPath("$.ids['" + adminDetailsId + "'].user.username", is("admin")))
+                .andExpect(jsonPath("$.ids['999999'].found", is(false)))
+                .andExpect(jsonPath("$.usernames.user.found", is(true)))
+                .andExpect(jsonPath("$.usernames.ghost.found", is(false)));
+
+        mockMvc.perform(get("/api/users/batch")
+                .header("Authorization", userToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Тест поиска пользователей по ФИО и телефону
+     */
+    @Test
+    public void testSearchUsers() throws Exception {
+        UserDetailsRequest userDetailsRequest = new UserDetailsRequest();
+        userDetailsRequest.setFirstName("Светлана");
+        userDetailsRequest.setLastName("Кузнецова");
+        userDetailsRequest.setPhoneNumber("+7 (912) 555-01-02");
+
+        mockMvc.perform(post("/api/users/me")
+                .header("Authorization", userToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(userDetailsRequest)))
+                .andExpect(status().isOk());
+
+        // Поиск по началу фамилии
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", userToken)
+                .param("q", "кузне"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].username", is("user")));
+
+        // Поиск с опечаткой
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", userToken)
+                .param("q", "Кузнецвоа Светлана"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].userDetails.lastName", is("Кузнецова")));
+
+        // Поиск по номеру телефона в другом формате
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", adminToken)
+                .param("q", "912 555"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        mockMvc.perform(get("/api/users/search")
+                .header("Authorization", adminToken)
+                .param("q", "несуществующий"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    /**
+     * Тест потоковой выгрузки пользователей (только для администратора)
+     */
+    @Test
+    public void testExportUsers() throws Exception {
+        MvcResult ndjson = mockMvc.perform(get("/api/users/export")
+                .header("Authorization", adminToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // Таймаут выгрузки задается только для нее, а не для всех асинхронных запросов
+        assertEquals(Duration.ofMinutes(30).toMillis(), ndjson.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"username\":\"admin\"")))
+                .andExpect(content().string(containsString("\"username\":\"user\"")));
+
+        MvcResult csv = mockMvc.perform(get("/api/users/export")
+                .header("Authorization", adminToken)
+                .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("id,username,email")))
+                .andExpect(content().string(containsString(",admin,admin@example.com,User,Admin,Test,1990-01-01,")));
+
+        mockMvc.perform(get("/api/users/export")
+                .header("Authorization", userToken))
+                .andExpect(status().isForbidden());
+    }
+
     /**
      * Тест получения детальной информации о пользователе по ID
      */
@@ -177,6 +371,53 @@ public class UserControllerIntegrationTest {
                 .andExpect(status().isOk());
     }
 
+    /**
+     * Тест условных запросов: If-None-Match для чтения и If-Match для изменения
+     */
+    @Test
+    public void testConditionalRequests() throws Exception {
+        String url = "/api/users/" + adminUserDetails.getId();
+        String eTag = mockMvc.perform(get(url)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Данные не изменились
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        UserDetailsRequest updateRequest = new UserDetailsRequest();
+        updateRequest.setFirstName("Updated");
+        updateRequest.setLastName("Admin");
+
+        // Устаревшая версия
+        mockMvc.perform(put(url)
+                .header("Authorization", adminToken)
+                .header("If-Match", "\"ud-" + adminUserDetails.getId() + "-v999\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateRequest)))
+                .andExpect(status().isPreconditionFailed());
+
+        // Актуальная версия
+        mockMvc.perform(put(url)
+                .header("Authorization", adminToken)
+                .header("If-Match", eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateRequest)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)));
+
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is("Updated")));
+    }
+
     /**
      * Тест создания/обновления детальной информации о текущем пользователе
      */
@@ -231,6 +472,493 @@ public class UserControllerIntegrationTest {
                 .header("Authorization", userToken))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message", is("Фотография успешно загружена")));
+
+        // Наличие фотографии отражается в ответе без загрузки ее содержимого
+        MvcResult result = mockMvc.perform(get("/api/users/me")
+                .header("Authorization", userToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasPhoto", is(true)))
+                .andExpect(jsonPath("$.photoUrl", notNullValue()))
+                .andReturn();
+        JsonNode details = objectMapper.readTree(result.getResponse().getContentAsString());
+        Long detailsId = details.get("id").asLong();
+        String photoUrl = details.get("photoUrl").asText();
+
+        // Содержимое отдается из хранилища фотографий
+        mockMvc.perform(get("/api/users/" + detailsId + "/photo")
+                .header("Authorization", userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, file.getSize()))
+                .andExpect(content().bytes(file.getBytes()));
+
+        // Подписанная ссылка работает без токена, измененная подпись отклоняется
+        mockMvc.perform(get(photoUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("public")))
+                .andExpect(content().bytes(file.getBytes()));
+
+        // На HEAD тип и размер берутся из метаданных, содержимое не передается
+        mockMvc.perform(head(photoUrl))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, file.getSize()))
+                .andExpect(content().bytes(new byte[0]));
+
+        int sig = photoUrl.indexOf("sig=") + 4;
+        String tampered = photoUrl.substring(0, sig) + (photoUrl.charAt(sig) == 'A' ? 'B' : 'A') + photoUrl.substring(sig + 1);
+        mockMvc.perform(get(tampered))
+                .andExpect(status().isForbidden());
+    }
+
+    /**
+     * Тест определения типа фотографии по содержимому, а не по заявленному клиентом типу
+     */
+    @Test
+    public void testUploadPhotoDetectsContentType() throws Exception {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+        MockMultipartFile file = new MockMultipartFile("file", "photo.txt", MediaType.TEXT_PLAIN_VALUE, png);
+        Long detailsId = adminUserDetails.getId();
+
+        mockMvc.perform(multipart("/api/users/" + detailsId + "/photo")
+                .file(file)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users/" + detailsId + "/photo")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_PNG_VALUE))
+                .andExpect(content().bytes(png));
+    }
+
+    /**
+     * Тест условных запросов, запросов диапазона и HEAD для фотографии
+     */
+    @Test
+    public void testPhotoConditionalAndRangeRequests() throws Exception {
+        byte[] data = "0123456789abcdef".getBytes();
+        MockMultipartFile file = new MockMultipartFile("file", "photo.bin", MediaType.APPLICATION_OCTET_STREAM_VALUE, data);
+        Long detailsId = adminUserDetails.getId();
+        String url = "/api/users/" + detailsId + "/photo";
+
+        mockMvc.perform(multipart(url)
+                .file(file)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+
+        MvcResult result = mockMvc.perform(get(url)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("inline")))
+                .andExpect(content().bytes(data))
+                .andReturn();
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/16"))
+                .andExpect(content().bytes("2345".getBytes()));
+
+        // При несовпадении If-Range отдается все содержимое
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .header(HttpHeaders.IF_RANGE, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.RANGE, "bytes=100-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */16"));
+
+        mockMvc.perform(head(url)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, data.length))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    /**
+     * Тест устаревших If-Modified-Since и If-Range после замены фотографии
+     */
+    @Test
+    public void testPhotoReplacementInvalidatesDateValidators() throws Exception {
+        Long detailsId = adminUserDetails.getId();
+        String url = "/api/users/" + detailsId + "/photo";
+        byte[] replaced = "replaced content".getBytes();
+
+        mockMvc.perform(multipart(url)
+                .file(new MockMultipartFile("file", "first.bin", MediaType.APPLICATION_OCTET_STREAM_VALUE, "first content".getBytes()))
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+        String lastModified = mockMvc.perform(get(url)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mockMvc.perform(multipart(url)
+                .file(new MockMultipartFile("file", "second.bin", MediaType.APPLICATION_OCTET_STREAM_VALUE, replaced))
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, not(lastModified)))
+                .andExpect(content().bytes(replaced));
+
+        // Часть нового содержимого не склеивается с закешированным началом прежнего
+        mockMvc.perform(get(url)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.RANGE, "bytes=4-")
+                .header(HttpHeaders.IF_RANGE, lastModified))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(replaced));
+    }
+
+    /**
+     * Тест загрузки фотографии по частям в произвольном порядке
+     */
+    @Test
+    public void testChunkedPhotoUpload() throws Exception {
+        byte[] data = "0123456789abcdefghij".getBytes();
+        String uploads = "/api/users/me/photo/uploads";
+
+        MvcResult result = mockMvc.perform(post(uploads)
+                .header("Authorization", adminToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fileName\": \"photo.bin\", \"size\": " + data.length + "}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received", is(0)))
+                .andReturn();
+        String id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asText();
+
+        // Вторая половина приходит первой
+        mockMvc.perform(put(uploads + "/" + id)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes 10-19/20")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(Arrays.copyOfRange(data, 10, 20)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ranges[0]", is("10-19")));
+
+        // Незавершенную загрузку нельзя сохранить
+        mockMvc.perform(post(uploads + "/" + id + "/commit")
+                .header("Authorization", adminToken))
+                .andExpect(status().isBadRequest());
+
+        // Размер тела должен совпадать с диапазоном
+        mockMvc.perform(put(uploads + "/" + id)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes 0-9/20")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(Arrays.copyOfRange(data, 0, 5)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(put(uploads + "/" + id)
+                .header("Authorization", adminToken)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes 0-9/20")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(Arrays.copyOfRange(data, 0, 10)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received", is(data.length)))
+                .andExpect(jsonPath("$.ranges", hasSize(1)));
+
+        // Чужая загрузка недоступна
+        mockMvc.perform(get(uploads + "/" + id)
+                .header("Authorization", userToken))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(post(uploads + "/" + id + "/commit")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users/" + adminUserDetails.getId() + "/photo")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+
+        mockMvc.perform(get(uploads + "/" + id)
+                .header("Authorization", adminToken))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Тест лимита незавершенных загрузок по частям при одновременном начале загрузок
+     */
+    @Test
+    public void testChunkedUploadSessionLimit() throws Exception {
+        String uploads = "/api/users/me/photo/uploads";
+        String request = "{\"fileName\": \"photo.bin\", \"size\": 10}";
+        List<String> created = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MvcResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> mockMvc.perform(post(uploads)
+                        .header("Authorization", adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                        .andReturn()));
+            }
+            for (Future<MvcResult> result : results) {
+                MockHttpServletResponse response = result.get().getResponse();
+                if (response.getStatus() == HttpStatus.CREATED.value()) {
+                    created.add(objectMapper.readTree(response.getContentAsString()).get("id").asText());
+                } else {
+                    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // Лимит photo.upload.max-sessions-per-user не превышается и при одновременных запросах
+        assertEquals(3, created.size());
+
+        // Отмененная загрузка освобождает место в лимите
+        mockMvc.perform(delete(uploads + "/" + created.get(0))
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+        mockMvc.perform(post(uploads)
+                .header("Authorization", adminToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(request))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post(uploads)
+                .header("Authorization", adminToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(request))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Тест фонового построения уменьшенных вариантов фотографии
+     */
+    @Test
+    public void testPhotoVariants() throws Exception {
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        MockMultipartFile file = new MockMultipartFile("file", "photo.png", MediaType.IMAGE_PNG_VALUE, png.toByteArray());
+        Long detailsId = adminUserDetails.getId();
+
+        mockMvc.perform(multipart("/api/users/" + detailsId + "/photo")
+                .file(file)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users/" + detailsId + "/photo")
+                .param("size", "100")
+                .header("Authorization", adminToken))
+                .andExpect(status().isBadRequest());
+
+        // В тестах варианты строятся синхронно, поэтому готовы сразу после загрузки
+        MvcResult result = mockMvc.perform(get("/api/users/" + detailsId + "/photo")
+                .param("size", "48")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_JPEG_VALUE))
+                .andReturn();
+        BufferedImage variant = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertEquals(48, variant.getWidth());
+        assertEquals(24, variant.getHeight());
+    }
+
+    /**
+     * Тест выдачи оптимизированной копии вместо исходной фотографии
+     */
+    @Test
+    public void testPhotoServesOptimizedCopyByDefault() throws Exception {
+        byte[] png = pngImage(400, 200);
+        MockMultipartFile file = new MockMultipartFile("file", "photo.png", MediaType.IMAGE_PNG_VALUE, png);
+        Long detailsId = adminUserDetails.getId();
+
+        mockMvc.perform(multipart("/api/users/" + detailsId + "/photo")
+                .file(file)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+
+        // Исходный файл с метаданными наружу не отдается
+        MvcResult result = mockMvc.perform(get("/api/users/" + detailsId + "/photo")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_JPEG_VALUE))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, not(containsString("no-cache"))))
+                .andReturn();
+        BufferedImage optimized = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertEquals(400, optimized.getWidth());
+        assertEquals(200, optimized.getHeight());
+    }
+
+    /**
+     * Тест повторного построения вариантов, если событие загрузки было потеряно
+     */
+    @Test
+    public void testMissingVariantsRequestedOnRead() throws Exception {
+        Long detailsId = adminUserDetails.getId();
+        String url = "/api/users/" + detailsId + "/photo";
+
+        mockMvc.perform(multipart(url)
+                .file(new MockMultipartFile("file", "photo.png", MediaType.IMAGE_PNG_VALUE, pngImage(400, 200)))
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+        String digest = userPhotoRepository.findByUserDetails_Id(detailsId).orElseThrow().getContentDigest();
+        photoVariantRepository.deleteAll(photoVariantRepository.findBySourceDigest(digest));
+
+        // Пока варианта нет, отдается исходная фотография, а построение запрашивается заново
+        mockMvc.perform(get(url)
+                .param("size", "48")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_PNG_VALUE))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("no-cache")));
+
+        mockMvc.perform(get(url)
+                .param("size", "48")
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_JPEG_VALUE));
+    }
+
+    /**
+     * Тест удаления вариантов и содержимого после замены и удаления фотографии
+     */
+    @Test
+    public void testReleasedPhotoDropsVariants() throws Exception {
+        Long detailsId = adminUserDetails.getId();
+        String url = "/api/users/" + detailsId + "/photo";
+
+        mockMvc.perform(multipart(url)
+                .file(new MockMultipartFile("file", "first.png", MediaType.IMAGE_PNG_VALUE, pngImage(320, 240)))
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+        UserPhoto firstPhoto = userPhotoRepository.findByUserDetails_Id(detailsId).orElseThrow();
+        String first = firstPhoto.getContentDigest();
+        // Размеры прочитаны из начала файла при загрузке
+        assertEquals(320, firstPhoto.getWidth());
+        assertEquals(240, firstPhoto.getHeight());
+        List<String> firstBlobs = contentDigests(first);
+        // Исходное содержимое и четыре варианта
+        assertEquals(5, firstBlobs.size());
+
+        // Замена фотографии освобождает прежнее содержимое вместе с вариантами
+        mockMvc.perform(multipart(url)
+                .file(new MockMultipartFile("file", "second.png", MediaType.IMAGE_PNG_VALUE, pngImage(240, 320)))
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+        String second = userPhotoRepository.findByUserDetails_Id(detailsId).orElseThrow().getContentDigest();
+        List<String> secondBlobs = contentDigests(second);
+        assertEquals(0, photoVariantRepository.findBySourceDigest(first).size());
+
+        // Содержимое без ссылок удаляет периодическая очистка
+        photoContentSweeper.collect(Instant.now().plusSeconds(1));
+        firstBlobs.forEach(digest -> assertFalse(photoStorage.exists(digest), digest));
+        secondBlobs.forEach(digest -> assertTrue(photoStorage.exists(digest), digest));
+
+        mockMvc.perform(delete(url)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk());
+        assertEquals(0, photoVariantRepository.findBySourceDigest(second).size());
+        photoContentSweeper.collect(Instant.now().plusSeconds(1));
+        secondBlobs.forEach(digest -> assertFalse(photoStorage.exists(digest), digest));
+    }
+
+    /**
+     * Тест очистки хранилища: содержимое без ссылок удаляется только после периода ожидания,
+     * а повторное сохранение того же содержимого продлевает его
+     */
+    @Test
+    public void testSweepKeepsRecentlyStoredContent() throws Exception {
+        byte[] data = ("orphan " + System.nanoTime()).getBytes();
+        StoredBlob stored = photoStorage.store(new ByteArrayInputStream(data));
+        Path file = photoStorage.open(stored.digest()).flatMap(PhotoBlob::path).orElseThrow();
+        Instant graceStart = Instant.now().minus(Duration.ofHours(1));
+
+        // Повторное сохранение, например параллельной загрузкой, обновляет момент сохранения
+        Files.setLastModifiedTime(file, FileTime.from(graceStart.minus(Duration.ofHours(1))));
+        photoStorage.store(new ByteArrayInputStream(data));
+        photoContentSweeper.collect(graceStart);
+        assertTrue(photoStorage.exists(stored.digest()));
+
+        Files.setLastModifiedTime(file, FileTime.from(graceStart.minus(Duration.ofHours(1))));
+        photoContentSweeper.collect(graceStart);
+        assertFalse(photoStorage.exists(stored.digest()));
+    }
+
+    /**
+     * Хеши исходного содержимого и всех его вариантов
+     */
+    private List<String> contentDigests(String sourceDigest) {
+        List<String> digests = new ArrayList<>();
+        digests.add(sourceDigest);
+        photoVariantRepository.findBySourceDigest(sourceDigest).stream()
+                .map(PhotoVariant::getContentDigest)
+                .forEach(digests::add);
+        return digests;
+    }
+
+    /**
+     * PNG-изображение заданного размера случайного цвета, чтобы его содержимое не совпадало с другими тестами
+     */
+    private static byte[] pngImage(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(new Random().nextInt(0xFFFFFF)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    /**
+     * Тест пакетного частичного обновления пользователей (только для администратора)
+     */
+    @Test
+    public void testBulkUpdateUserDetails() throws Exception {
+        Long adminDetailsId = adminUserDetails.getId();
+        String body = "["
+                + "{\"id\": " + adminDetailsId + ", \"phoneNumber\": \"+7 (900) 000-00-00\", \"middleName\": null},"
+                + "{\"id\": 999999, \"phoneNumber\": \"+7 (900) 111-11-11\"},"
+                + "{\"id\": " + adminDetailsId + ", \"password\": \"secret\"}"
+                + "]";
+
+        mockMvc.perform(patch("/api/users")
+                .header("Authorization", userToken)
+                .contentType("application/merge-patch+json")
+                .content(body))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(patch("/api/users")
+                .header("Authorization", adminToken)
+                .contentType("application/merge-patch+json")
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated", is(1)))
+                .andExpect(jsonPath("$.results[0].status", is("UPDATED")))
+                .andExpect(jsonPath("$.results[1].status", is("NOT_FOUND")))
+                .andExpect(jsonPath("$.results[2].status", is("INVALID")));
+
+        // Изменены только переданные поля
+        mockMvc.perform(get("/api/users/" + adminDetailsId)
+                .header("Authorization", adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phoneNumber", is("+7 (900) 000-00-00")))
+                .andExpect(jsonPath("$.middleName", nullValue()))
+                .andExpect(jsonPath("$.firstName", is("Admin")));
     }
 
     /**
@@ -304,4 +1032,34 @@ public class UserControllerIntegrationTest {
                 .andExpect(jsonPath("$.firstName", is("Updated")))
                 .andExpect(jsonPath("$.lastName", is("UserByAdmin")));
     }
-}
\ No newline at end of file
+
+    /**
+     * Тест пакетной регистрации пользователей (только для администратора)
+     */
+    @Test
+    public void testBatchRegistration() throws Exception {
+        List<SignupRequest> requests = List.of(
+                signupRequest("batchuser", "batch@example.com", "password123"),
+                signupRequest("user", "other@example.com", "password123"),
+                signupRequest("shortpass", "short@example.com", "123"));
+
+        mockMvc.perform(post("/api/admin/users/batch")
+                .header("Authorization", userToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(post("/api/admin/users/batch")
+                .header("Authorization", adminToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.failed", is(2)))
+                .andExpect(jsonPath("$.results[0].status", is("CREATED")))
+                .andExpect(jsonPath("$.results[1].status", is("DUPLICATE")))
+                .andExpect(jsonPath("$.results[2].status", is("INVALID")));
+
+        getAuthToken("batchuser", "password123");
+    }
+}
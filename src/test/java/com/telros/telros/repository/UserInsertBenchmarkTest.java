@@ -0,0 +1,134 @@
+package com.telros.telros.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telros.telros.dto.request.SignupRequest;
+import com.telros.telros.dto.response.BatchRegistrationResponse;
+import com.telros.telros.model.ERole;
+import com.telros.telros.model.Role;
+import com.telros.telros.service.BatchRegistrationService;
+import com.telros.telros.service.RoleRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.telros.telros.TestFixtures.signupRequest;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Замер количества SQL-запросов и времени при создании пользователей.
+ * Запуск: mvn test -Dtest=UserInsertBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+public class UserInsertBenchmarkTest {
+
+    private static final int SIGNUP_COUNT = 100;
+    private static final int BATCH_COUNT = 1000;
+
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final UserDetailsRepository userDetailsRepository;
+    private final RoleRegistry roleRegistry;
+    private final BatchRegistrationService batchRegistrationService;
+    private final Statistics statistics;
+
+    @Autowired
+    public UserInsertBenchmarkTest(MockMvc mockMvc,
+                                   ObjectMapper objectMapper,
+                                   UserRepository userRepository,
+                                   RoleRepository roleRepository,
+                                   UserDetailsRepository userDetailsRepository,
+                                   RoleRegistry roleRegistry,
+                                   BatchRegistrationService batchRegistrationService,
+                                   EntityManagerFactory entityManagerFactory) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.userDetailsRepository = userDetailsRepository;
+        this.roleRegistry = roleRegistry;
+        this.batchRegistrationService = batchRegistrationService;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @BeforeEach
+    public void setup() {
+        userDetailsRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+
+        roleRepository.save(new Role(ERole.ROLE_USER));
+        roleRepository.save(new Role(ERole.ROLE_ADMIN));
+        roleRegistry.refresh();
+    }
+
+    /**
+     * Регистрация по одному пользователю через /api/auth/signup
+     */
+    @Test
+    public void benchmarkSignup() throws Exception {
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < SIGNUP_COUNT; i++) {
+            mockMvc.perform(post("/api/auth/signup")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(signupRequest("signup" + i, "signup" + i + "@example.com", "password123"))))
+                    .andExpect(status().isOk());
+        }
+        report("signup", SIGNUP_COUNT, System.nanoTime() - start);
+
+        assertEquals(SIGNUP_COUNT * 2L, statistics.getEntityInsertCount());
+    }
+
+    /**
+     * Пакетная регистрация через BatchRegistrationService
+     */
+    @Test
+    public void benchmarkBatchRegistration() {
+        List<SignupRequest> requests = new ArrayList<>(BATCH_COUNT);
+        for (int i = 0; i < BATCH_COUNT; i++) {
+            requests.add(signupRequest("batch" + i, "batch" + i + "@example.com", "password123"));
+        }
+
+        statistics.clear();
+        long start = System.nanoTime();
+        BatchRegistrationResponse response = batchRegistrationService.registerAll(requests);
+        report("batch", BATCH_COUNT, System.nanoTime() - start);
+
+        assertEquals(BATCH_COUNT, response.getCreated());
+        // С IDENTITY каждая вставка была бы отдельным запросом: не меньше трех на пользователя
+        assertTrue(statistics.getPrepareStatementCount() < BATCH_COUNT,
+                "Вставки не объединяются в JDBC-пакеты: " + statistics.getPrepareStatementCount());
+    }
+
+    private void report(String name, int count, long elapsedNanos) {
+        log.info("[{}] пользователей: {}, время: {} мс, подготовленных запросов: {} ({} на пользователя), вставок сущностей: {}",
+                name,
+                count,
+                elapsedNanos / 1_000_000,
+                statistics.getPrepareStatementCount(),
+                String.format("%.2f", (double) statistics.getPrepareStatementCount() / count),
+                statistics.getEntityInsertCount());
+    }
+}
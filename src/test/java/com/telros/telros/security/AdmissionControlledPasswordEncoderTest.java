@@ -0,0 +1,145 @@
+package com.telros.telros.security;
+
+import com.telros.telros.dto.response.MessageResponse;
+import com.telros.telros.exception.GlobalExceptionHandler;
+import com.telros.telros.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тест пула хеширования паролей: отклонение при переполнении очереди и перехеширование устаревших хешей.
+ * В пуле один поток и очередь на одну задачу, хеширование блокируется до release.
+ */
+public class AdmissionControlledPasswordEncoderTest {
+
+    private final BlockingEncoder delegate = new BlockingEncoder();
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AdmissionControlledPasswordEncoder encoder;
+
+    @AfterEach
+    public void tearDown() {
+        delegate.release.countDown();
+        callers.shutdownNow();
+        encoder.destroy();
+    }
+
+    /**
+     * Тест переполнения очереди: следующий запрос сразу отклоняется с 503,
+     * а принятые задачи не отменяются и завершаются успешно
+     */
+    @Test
+    public void testRejectsWhenQueueFull() throws Exception {
+        encoder = encoder(Duration.ofSeconds(5));
+        Future<String> running = callers.submit(() -> encoder.encode("first"));
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        Future<String> queued = callers.submit(() -> encoder.encode("second"));
+        awaitQueued();
+
+        ServiceOverloadedException e = assertThrows(ServiceOverloadedException.class, () -> encoder.encode("third"));
+        ResponseEntity<MessageResponse> response = new GlobalExceptionHandler().handleServiceOverloadedException(e, null);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        delegate.release.countDown();
+        assertEquals("hash:first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:second", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, delegate.encoded.get());
+        assertEquals(1, meterRegistry.get("security.password.hashing.rejected").functionCounter().count());
+    }
+
+    /**
+     * Тест ожидания в очереди: задача, ждавшая дольше допустимого, отклоняется без хеширования
+     */
+    @Test
+    public void testRejectsTaskThatWaitedTooLong() throws Exception {
+        encoder = encoder(Duration.ofMillis(50));
+        Future<String> running = callers.submit(() -> encoder.encode("first"));
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        Future<String> queued = callers.submit(() -> encoder.encode("second"));
+        awaitQueued();
+
+        Thread.sleep(200);
+        delegate.release.countDown();
+
+        assertEquals("hash:first", running.get(5, TimeUnit.SECONDS));
+        Exception e = assertThrows(Exception.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ServiceOverloadedException);
+        assertEquals(1, delegate.encoded.get());
+    }
+
+    /**
+     * Тест перехеширования: устаревшими считаются только хеши BCrypt с меньшей стоимостью
+     */
+    @Test
+    public void testUpgradeEncoding() {
+        encoder = new AdmissionControlledPasswordEncoder(5, 1, 1, Duration.ofSeconds(5));
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("password")));
+        assertFalse(encoder.upgradeEncoding("plain"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    private AdmissionControlledPasswordEncoder encoder(Duration maxQueueWait) {
+        AdmissionControlledPasswordEncoder created = new AdmissionControlledPasswordEncoder(delegate, 4, 1, 1, maxQueueWait);
+        created.registerMetrics(meterRegistry);
+        return created;
+    }
+
+    private void awaitQueued() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("security.password.hashing.queue").gauge().value() < 1) {
+            assertTrue(System.nanoTime() < deadline, "Задача не попала в очередь");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Кодировщик-заглушка, который не завершает хеширование до release
+     */
+    private static final class BlockingEncoder implements PasswordEncoder {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger encoded = new AtomicInteger();
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            encoded.incrementAndGet();
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.telros.telros.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тест кэша данных пользователей: повторная загрузка не обращается к базе данных,
+ * а после сброса записи возвращаются актуальные данные
+ */
+public class CachingUserDetailsServiceTest {
+
+    private static final UserDetailsImpl USER =
+            UserDetailsImpl.build(1L, "alice", "alice@example.com", List.of("ROLE_USER"));
+    private static final UserDetailsImpl ADMIN =
+            UserDetailsImpl.build(1L, "alice", "alice@example.com", List.of("ROLE_USER", "ROLE_ADMIN"));
+
+    private UserDetailsServiceImpl delegate;
+    private CachingUserDetailsService userDetailsService;
+
+    @BeforeEach
+    public void setup() {
+        delegate = mock(UserDetailsServiceImpl.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        userDetailsService = new CachingUserDetailsService(delegate, 100, Duration.ofMinutes(5), meterRegistry);
+    }
+
+    /**
+     * Тест обновления: до сброса возвращается закэшированная запись, после сброса - новые роли
+     */
+    @Test
+    public void testUpdateEvictsCachedEntry() {
+        when(delegate.loadUserByUsername("alice")).thenReturn(USER, ADMIN);
+
+        assertSame(USER, userDetailsService.loadUserByUsername("alice"));
+        assertSame(USER, userDetailsService.loadUserByUsername("alice"));
+        verify(delegate, times(1)).loadUserByUsername("alice");
+
+        userDetailsService.evict("alice");
+
+        UserDetails updated = userDetailsService.loadUserByUsername("alice");
+        assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"),
+                updated.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        verify(delegate, times(2)).loadUserByUsername("alice");
+    }
+
+    /**
+     * Тест удаления: после сброса удаленный пользователь не находится, а неудачная загрузка не кэшируется
+     */
+    @Test
+    public void testDeleteEvictsCachedEntry() {
+        when(delegate.loadUserByUsername("alice"))
+                .thenReturn(USER)
+                .thenThrow(new UsernameNotFoundException("Пользователь не найден: alice"))
+                .thenReturn(USER);
+
+        userDetailsService.loadUserByUsername("alice");
+        userDetailsService.evict("alice");
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("alice"));
+        assertSame(USER, userDetailsService.loadUserByUsername("alice"));
+        verify(delegate, times(3)).loadUserByUsername("alice");
+    }
+
+    /**
+     * Тест смены пароля: запись сбрасывается и следующая загрузка читает актуальные данные
+     */
+    @Test
+    public void testPasswordChangeEvictsCachedEntry() {
+        when(delegate.loadUserByUsername("alice")).thenReturn(USER, ADMIN);
+        when(delegate.updatePassword(USER, "hash")).thenReturn(USER);
+
+        userDetailsService.loadUserByUsername("alice");
+        userDetailsService.updatePassword(USER, "hash");
+
+        assertSame(ADMIN, userDetailsService.loadUserByUsername("alice"));
+        verify(delegate, times(2)).loadUserByUsername("alice");
+    }
+
+    /**
+     * Тест полного сброса кэша
+     */
+    @Test
+    public void testEvictAll() {
+        when(delegate.loadUserByUsername("alice")).thenReturn(USER, ADMIN);
+
+        userDetailsService.loadUserByUsername("alice");
+        userDetailsService.evictAll();
+
+        assertSame(ADMIN, userDetailsService.loadUserByUsername("alice"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.telros.telros.security;
+
+import com.telros.telros.exception.LoginBlockedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Тест учета неудачных попыток входа: лимит 3 попытки на пользователя и 5 на IP-адрес
+ */
+public class LoginAttemptServiceTest {
+
+    private static final String IP = "203.0.113.10";
+    private static final String OTHER_IP = "203.0.113.20";
+
+    private final LoginAttemptService loginAttemptService =
+            new LoginAttemptService(3, 5, Duration.ofMinutes(15), 1_000);
+
+    /**
+     * Тест лимита пользователя: вход блокируется с любого адреса и без учета регистра имени,
+     * другие пользователи с того же адреса не блокируются
+     */
+    @Test
+    public void testUserLimit() {
+        for (int i = 0; i < 3; i++) {
+            assertDoesNotThrow(() -> loginAttemptService.checkAllowed("alice", IP));
+            loginAttemptService.recordFailure("alice", IP);
+        }
+
+        assertThrows(LoginBlockedException.class, () -> loginAttemptService.checkAllowed("alice", OTHER_IP));
+        assertThrows(LoginBlockedException.class, () -> loginAttemptService.checkAllowed("ALICE", IP));
+        assertDoesNotThrow(() -> loginAttemptService.checkAllowed("bob", IP));
+    }
+
+    /**
+     * Тест лимита IP-адреса: перебор разных имен с одного адреса блокирует адрес,
+     * но не сами имена при входе с другого адреса
+     */
+    @Test
+    public void testIpLimit() {
+        for (int i = 0; i < 5; i++) {
+            loginAttemptService.recordFailure("user" + i, IP);
+        }
+
+        assertThrows(LoginBlockedException.class, () -> loginAttemptService.checkAllowed("carol", IP));
+        assertDoesNotThrow(() -> loginAttemptService.checkAllowed("carol", OTHER_IP));
+        assertDoesNotThrow(() -> loginAttemptService.checkAllowed("user0", OTHER_IP));
+    }
+
+    /**
+     * Тест успешного входа: счетчик пользователя сбрасывается, а счетчик адреса сохраняется
+     */
+    @Test
+    public void testSuccessResetsUserCounter() {
+        for (int i = 0; i < 3; i++) {
+            loginAttemptService.recordFailure("alice", IP);
+        }
+        assertThrows(LoginBlockedException.class, () -> loginAttemptService.checkAllowed("alice", IP));
+
+        loginAttemptService.recordSuccess("alice");
+        assertDoesNotThrow(() -> loginAttemptService.checkAllowed("alice", IP));
+
+        loginAttemptService.recordFailure("bob", IP);
+        loginAttemptService.recordFailure("bob", IP);
+        assertThrows(LoginBlockedException.class, () -> loginAttemptService.checkAllowed("dave", IP));
+    }
+}
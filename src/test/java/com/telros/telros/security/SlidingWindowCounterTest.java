@@ -0,0 +1,78 @@
+package com.telros.telros.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тест счетчика событий в скользящем окне: окно в 1 секунду из 10 корзин по 100 мс
+ */
+public class SlidingWindowCounterTest {
+
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(1_000, 10);
+
+    /**
+     * Тест переключения корзины: корзина, в которую пришло событие следующего круга,
+     * обнуляется, а остальные корзины окна сохраняют свои события
+     */
+    @Test
+    public void testBucketRollover() {
+        counter.increment(0);
+        counter.increment(50);
+        counter.increment(150);
+        assertEquals(3, counter.sum(150));
+
+        counter.increment(1_000);
+
+        assertEquals(2, counter.sum(1_000));
+    }
+
+    /**
+     * Тест границы окна: событие учитывается до конца окна и перестает учитываться ровно на его границе
+     */
+    @Test
+    public void testExpiryAtWindowEdge() {
+        counter.increment(0);
+
+        assertEquals(1, counter.sum(999));
+        assertEquals(0, counter.sum(1_000));
+    }
+
+    /**
+     * Тест одновременных инкрементов в одной корзине: ни одно событие не теряется
+     */
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        int threads = 8;
+        int perThread = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < perThread; j++) {
+                        counter.increment(50);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals((long) threads * perThread, counter.sum(50));
+    }
+}
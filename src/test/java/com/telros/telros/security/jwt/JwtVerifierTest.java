@@ -0,0 +1,55 @@
+package com.telros.telros.security.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.security.Key;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Тест проверки JWT токенов: claims за один разбор и причины отказа
+ */
+public class JwtVerifierTest {
+
+    private final Key key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private final JwtVerifier jwtVerifier = new JwtVerifier(Encoders.BASE64.encode(key.getEncoded()));
+
+    /**
+     * Тест валидного токена и причин отказа с учетом в счетчиках
+     */
+    @Test
+    public void testVerify() {
+        JwtVerificationResult valid = jwtVerifier.verify(token(key, 60_000));
+        assertEquals(JwtVerificationResult.Status.VALID, valid.status());
+        assertEquals("alice", valid.claims().getSubject());
+
+        JwtVerificationResult expired = jwtVerifier.verify(token(key, -60_000));
+        assertEquals(JwtVerificationResult.Status.EXPIRED, expired.status());
+        assertNull(expired.claims());
+
+        Key otherKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        assertEquals(JwtVerificationResult.Status.INVALID_SIGNATURE, jwtVerifier.verify(token(otherKey, 60_000)).status());
+        assertEquals(JwtVerificationResult.Status.MALFORMED, jwtVerifier.verify("not-a-token").status());
+        assertEquals(JwtVerificationResult.Status.EMPTY, jwtVerifier.verify("").status());
+
+        assertEquals(1, jwtVerifier.getOutcomeCount(JwtVerificationResult.Status.VALID));
+        assertEquals(1, jwtVerifier.getOutcomeCount(JwtVerificationResult.Status.EXPIRED));
+        assertEquals(1, jwtVerifier.getOutcomeCount(JwtVerificationResult.Status.INVALID_SIGNATURE));
+    }
+
+    private static String token(Key key, long ttlMs) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setSubject("alice")
+                .setIssuedAt(new Date(now - 120_000))
+                .setExpiration(new Date(now + ttlMs))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+    }
+}
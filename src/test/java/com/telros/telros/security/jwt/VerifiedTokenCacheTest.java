@@ -0,0 +1,85 @@
+package com.telros.telros.security.jwt;
+
+import com.telros.telros.security.UserDetailsImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Тест кэша проверенных JWT токенов
+ */
+public class VerifiedTokenCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private VerifiedTokenCache tokenCache;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenCache = new VerifiedTokenCache(true, 100, meterRegistry);
+    }
+
+    /**
+     * Тест попадания: сохраненный токен возвращается из кэша, статистика публикуется в метриках
+     */
+    @Test
+    public void testHit() {
+        VerifiedToken verified = verified("alice", 60_000);
+
+        assertNull(tokenCache.get("token-a"));
+        tokenCache.put("token-a", verified);
+
+        assertSame(verified, tokenCache.get("token-a"));
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+    }
+
+    /**
+     * Тест истечения: запись удаляется в момент истечения токена, истекший токен не сохраняется
+     */
+    @Test
+    public void testExpiry() throws InterruptedException {
+        tokenCache.put("token-a", verified("alice", 200));
+        tokenCache.put("token-b", verified("alice", -1_000));
+
+        assertNotNull(tokenCache.get("token-a"));
+        assertNull(tokenCache.get("token-b"));
+
+        Thread.sleep(400);
+        assertNull(tokenCache.get("token-a"));
+    }
+
+    /**
+     * Тест выключенного кэша: токены не сохраняются
+     */
+    @Test
+    public void testDisabled() {
+        VerifiedTokenCache disabled = new VerifiedTokenCache(false, 100, new SimpleMeterRegistry());
+
+        disabled.put("token-a", verified("alice", 60_000));
+
+        assertNull(disabled.get("token-a"));
+        assertEquals(0, disabled.size());
+    }
+
+    private static VerifiedToken verified(String username, long ttlMs) {
+        UserDetailsImpl principal = UserDetailsImpl.build(1L, username, username + "@example.com", List.of("ROLE_USER"));
+        return new VerifiedToken(username, principal, System.currentTimeMillis() + ttlMs);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", "jwt.verified-tokens")
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
@@ -0,0 +1,294 @@
+package com.telros.telros.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тест кэша содержимого фотографий в области памяти вне heap
+ */
+public class PhotoBlobCacheTest {
+
+    private static final String DIGEST = "a".repeat(64);
+    private static final byte[] CONTENT = "photo content".getBytes();
+
+    private PhotoStorage photoStorage;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        photoStorage = mock(PhotoStorage.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(photoStorage.open(DIGEST)).thenAnswer(invocation -> Optional.of(new BytesBlob(DIGEST, CONTENT, null)));
+    }
+
+    private PhotoBlobCache cache(boolean enabled) {
+        return new PhotoBlobCache(photoStorage, meterRegistry, enabled, "database",
+                DataSize.ofKilobytes(2), DataSize.ofKilobytes(1), DataSize.ofBytes(256));
+    }
+
+    /**
+     * Тест попадания и промаха: повторное обращение не читает хранилище, статистика публикуется в метриках
+     */
+    @Test
+    public void testHitAndMiss() throws IOException {
+        PhotoBlobCache cache = cache(true);
+
+        assertArrayEquals(CONTENT, read(cache.open(DIGEST).orElseThrow()));
+        assertArrayEquals(CONTENT, read(cache.open(DIGEST).orElseThrow()));
+
+        verify(photoStorage, times(1)).open(DIGEST);
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+    }
+
+    /**
+     * Тест удаления записи: после invalidate содержимое снова читается из хранилища
+     */
+    @Test
+    public void testInvalidate() throws IOException {
+        PhotoBlobCache cache = cache(true);
+
+        cache.open(DIGEST);
+        cache.invalidate(DIGEST);
+        cache.open(DIGEST);
+
+        verify(photoStorage, times(2)).open(DIGEST);
+    }
+
+    /**
+     * Тест одновременных промахов: содержимое читается из хранилища один раз
+     */
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        PhotoBlob stored = mock(PhotoBlob.class);
+        when(stored.digest()).thenReturn(DIGEST);
+        when(stored.size()).thenReturn((long) CONTENT.length);
+        when(stored.path()).thenReturn(Optional.empty());
+        when(stored.openStream()).thenAnswer(invocation -> {
+            loading.countDown();
+            Thread.sleep(100);
+            return new ByteArrayInputStream(CONTENT);
+        });
+        when(photoStorage.open(DIGEST)).thenReturn(Optional.of(stored));
+        PhotoBlobCache cache = cache(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<PhotoBlob>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.open(DIGEST)));
+            loading.await();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.open(DIGEST)));
+            }
+            for (Future<Optional<PhotoBlob>> result : results) {
+                assertArrayEquals(CONTENT, read(result.get().orElseThrow()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(stored, times(1)).openStream();
+    }
+
+    /**
+     * Тест содержимого, которое не кешируется: отсутствующее и слишком большое, без учета в статистике
+     */
+    @Test
+    public void testUncacheableContent() throws IOException {
+        String large = "b".repeat(64);
+        String absent = "c".repeat(64);
+        when(photoStorage.open(large)).thenAnswer(invocation -> Optional.of(new BytesBlob(large, new byte[2048], null)));
+        when(photoStorage.open(absent)).thenReturn(Optional.empty());
+        PhotoBlobCache cache = cache(true);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(2048, cache.open(large).orElseThrow().size());
+            assertTrue(cache.open(absent).isEmpty());
+        }
+
+        verify(photoStorage, times(2)).open(large);
+        assertEquals(0, meterRegistry.get("photo.cache.bytes").gauge().value());
+        // Содержимое, которое не может быть закешировано, не считается промахом
+        assertEquals(0, gets("hit") + gets("miss"));
+    }
+
+    /**
+     * Тест файлового хранилища: файл не копируется в область и отдается по пути к нему
+     */
+    @Test
+    public void testFileBackedContentNotCached() throws IOException {
+        String file = "c".repeat(64);
+        when(photoStorage.open(file)).thenAnswer(invocation -> Optional.of(new BytesBlob(file, CONTENT, Path.of("photo"))));
+        PhotoBlobCache cache = cache(true);
+        double capacity = arenaFree();
+
+        cache.open(file);
+        PhotoBlob opened = cache.open(file).orElseThrow();
+
+        assertEquals(Optional.of(Path.of("photo")), opened.path());
+        assertEquals(capacity, arenaFree());
+        assertEquals(0, gets("hit") + gets("miss"));
+        verify(photoStorage, times(2)).open(file);
+    }
+
+    /**
+     * Тест содержимого из нескольких слэбов: поток и передача диапазона через границу слэба
+     */
+    @Test
+    public void testContentSpanningSlabs() throws IOException {
+        String digest = "e".repeat(64);
+        byte[] content = new byte[700];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        when(photoStorage.open(digest)).thenAnswer(invocation -> Optional.of(new BytesBlob(digest, content, null)));
+        PhotoBlobCache cache = cache(true);
+        double capacity = arenaFree();
+
+        PhotoBlob blob = cache.open(digest).orElseThrow();
+        assertArrayEquals(content, read(blob));
+
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        blob.transferTo(200, 400, Channels.newChannel(range));
+        assertArrayEquals(Arrays.copyOfRange(content, 200, 600), range.toByteArray());
+        assertEquals(capacity - 3 * 256, arenaFree());
+    }
+
+    /**
+     * Тест вытеснения: слэбы удаленных записей возвращаются в область
+     */
+    @Test
+    public void testEvictionReturnsSlabs() throws IOException {
+        PhotoBlobCache cache = cache(true);
+        double capacity = arenaFree();
+
+        cache.open(DIGEST);
+        assertEquals(capacity - 256, arenaFree());
+
+        cache.invalidate(DIGEST);
+        assertEquals(capacity, arenaFree());
+    }
+
+    /**
+     * Тест чтения во время вытеснения: открытый поток удерживает слэбы до закрытия,
+     * а содержимое, вытесненное до начала чтения, читается из хранилища
+     */
+    @Test
+    public void testReadDuringEviction() throws IOException {
+        PhotoBlobCache cache = cache(true);
+        double capacity = arenaFree();
+
+        PhotoBlob blob = cache.open(DIGEST).orElseThrow();
+        try (InputStream content = blob.openStream()) {
+            cache.invalidate(DIGEST);
+            assertEquals(capacity - 256, arenaFree());
+            assertArrayEquals(CONTENT, content.readAllBytes());
+        }
+        assertEquals(capacity, arenaFree());
+
+        assertArrayEquals(CONTENT, read(blob));
+        verify(photoStorage, times(2)).open(DIGEST);
+    }
+
+    /**
+     * Тест файлового хранилища: кэш выключен и область памяти не выделяется
+     */
+    @Test
+    public void testDisabledForFilesystemStorage() throws IOException {
+        PhotoBlobCache cache = new PhotoBlobCache(photoStorage, meterRegistry, true, "filesystem",
+                DataSize.ofKilobytes(2), DataSize.ofKilobytes(1), DataSize.ofBytes(256));
+
+        cache.open(DIGEST);
+        cache.open(DIGEST);
+
+        assertEquals(0, arenaFree());
+        verify(photoStorage, times(2)).open(DIGEST);
+    }
+
+    /**
+     * Тест выключенного кэша: все обращения идут в хранилище
+     */
+    @Test
+    public void testDisabled() throws IOException {
+        PhotoBlobCache cache = cache(false);
+
+        cache.open(DIGEST);
+        cache.open(DIGEST);
+
+        verify(photoStorage, times(2)).open(anyString());
+        assertEquals(0, gets("hit") + gets("miss"));
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", "photo.cache")
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+
+    private double arenaFree() {
+        return meterRegistry.get("photo.cache.arena.free").gauge().value();
+    }
+
+    private static byte[] read(PhotoBlob blob) throws IOException {
+        try (InputStream content = blob.openStream()) {
+            return content.readAllBytes();
+        }
+    }
+
+    /**
+     * Содержимое в памяти, при необходимости с путем к файлу
+     */
+    private record BytesBlob(String digest, byte[] content, Path file) implements PhotoBlob {
+
+        @Override
+        public long size() {
+            return content.length;
+        }
+
+        @Override
+        public Optional<Path> path() {
+            return Optional.ofNullable(file);
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}